@@ -0,0 +1,145 @@
+package algorithm;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measure the heap allocated by the N-list, tidset and diffset joins of the
+ * pairs of 1-items of a database, as the plus algorithms run them. The
+ * threshold is set so that most pairs are below it, and the bytes allocated
+ * by the calling thread are read from the ThreadMXBean of the JVM, separately
+ * for the rejected joins and for the accepted ones.
+ *
+ * Arguments: pairs of transaction and weight files, default chess.tran chess.pro
+ */
+public class JoinAllocationBenchmark
+{
+    /** fraction of the pairs of 1-items below the threshold */
+    static final double REJECTED = 0.9;
+
+    /** rounds over the pairs before measuring, so that the joins are compiled */
+    static final int WARMUP_ROUNDS = 20;
+
+    /** rounds over the pairs measured */
+    static final int ROUNDS = 20;
+
+    /** A join of the pair of 1-items i and j, returning whether the union is accepted */
+    interface PairJoin
+    {
+        boolean join(int i, int j);
+    }
+
+    public static void main(String [] arg) throws IOException
+    {
+        if (arg.length == 0)
+            arg = new String[] { fileToPath("run/chess.tran"), fileToPath("run/chess.pro") };
+
+        for (int f = 0; f + 1 < arg.length; f += 2)
+        {
+            TransactionDb db = TransactionDb.load(arg[f], arg[f + 1]).rankItems();
+            float ttw = db.ttw;
+
+            // the tidset and N-list of each 1-item, the items being ranked by descending ws
+            int numOfItems = db.maxItem + 1;
+            int[][] tids = new int[numOfItems][];
+            int[] sizes = new int[numOfItems];
+            for (int item = 0; item < numOfItems; item++)
+                tids[item] = new int[db.itemCounts[item]];
+            WppcTree tree = new WppcTree(1 << 16);
+            for (int t = 0; t < db.size(); t++)
+            {
+                for (int p = db.offsets[t]; p < db.offsets[t + 1]; p++)
+                    tids[db.items[p]][sizes[db.items[p]]++] = t;
+                tree.insert(db.items, db.offsets[t], db.offsets[t + 1], db.tw[t]);
+            }
+            NList[] nLists = tree.generateNLists(numOfItems, new NListArena());
+            Tidset[] tidsets = new Tidset[numOfItems];
+            for (int item = 0; item < numOfItems; item++)
+                tidsets[item] = Tidset.of(tids[item], db.tw, true);
+            float[] ws = db.ws;
+
+            // the threshold below which the REJECTED fraction of the pairs fall
+            JoinBuffer buffer = new JoinBuffer();
+            float[] pairWs = new float[numOfItems * (numOfItems - 1) / 2];
+            for (int i = 1, p = 0; i < numOfItems; i++)
+            {
+                for (int j = 0; j < i; j++)
+                {
+                    Tidset.intersect(tidsets[i], tidsets[j], db.tw, true, UpperBound.NONE, buffer);
+                    pairWs[p++] = (float) (buffer.sumTw / ttw);
+                }
+            }
+            float[] sorted = pairWs.clone();
+            Arrays.sort(sorted);
+            float threshold = sorted[(int) (REJECTED * (sorted.length - 1))];
+            float minSumTw = UpperBound.minSumTw(threshold, ttw);
+
+            List<int[]> rejected = new ArrayList<>();
+            List<int[]> accepted = new ArrayList<>();
+            for (int i = 1, p = 0; i < numOfItems; i++)
+                for (int j = 0; j < i; j++)
+                    (pairWs[p++] < threshold ? rejected : accepted).add(new int[] { i, j });
+
+            NListArena arena = new NListArena();
+            PairJoin nListJoin = (i, j) ->
+            {
+                NList nCs = NList.combine(nLists[i], nLists[j], minSumTw, arena);
+                return nCs != null && nCs.sumTw / ttw >= threshold;
+            };
+            PairJoin tidsetJoin = (i, j) ->
+                Tidset.intersect(tidsets[i], tidsets[j], db.tw, true, minSumTw, buffer) && buffer.sumTw / ttw >= threshold;
+            PairJoin diffsetJoin = (i, j) ->
+                Diffset.combine(tids[j], tids[i], db.tw, ws[i] * ttw - minSumTw, buffer)
+                    && ws[i] - buffer.sumTw / ttw >= threshold;
+
+            System.out.println("========== " + arg[f] + " ============");
+            System.out.println(" Threshold: " + threshold + ", rejected joins: " + rejected.size() + ", accepted joins: " + accepted.size());
+            report("N-list", nListJoin, rejected, accepted, arena);
+            report("Tidset", tidsetJoin, rejected, accepted, arena);
+            report("Diffset", diffsetJoin, rejected, accepted, arena);
+        }
+    }
+
+    static void report(String name, PairJoin join, List<int[]> rejected, List<int[]> accepted, NListArena arena)
+    {
+        System.out.println(" " + name + " ~: " + bytesPerJoin(join, rejected, arena) + " bytes/rejected join, "
+                + bytesPerJoin(join, accepted, arena) + " bytes/accepted join");
+    }
+
+    /** Average heap allocated by a join of the pairs, after warming up */
+    static double bytesPerJoin(PairJoin join, List<int[]> pairs, NListArena arena)
+    {
+        if (pairs.isEmpty())
+            return 0;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int count = 0;
+        long bytes = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++)
+        {
+            arena.reset();
+            long start = threads.getThreadAllocatedBytes(thread);
+            for (int[] pair : pairs)
+            {
+                if (join.join(pair[0], pair[1]))
+                    count++;
+            }
+            if (round >= WARMUP_ROUNDS)
+                bytes += threads.getThreadAllocatedBytes(thread) - start;
+        }
+        if (count == Integer.MIN_VALUE)
+            System.out.println(count);
+        return (double) bytes / ROUNDS / pairs.size();
+    }
+
+    static String fileToPath(String fileName) throws UnsupportedEncodingException
+    {
+        URL url = JoinAllocationBenchmark.class.getClassLoader().getResource(fileName);
+        return java.net.URLDecoder.decode(url.getPath(),"UTF-8");
+    }
+}
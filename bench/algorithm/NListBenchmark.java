@@ -0,0 +1,144 @@
+package algorithm;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare the merge based N-list combination with the former comparison of
+ * every pair of node codes, on N-lists of a real WPPC tree: the pairs of the
+ * 1-items with the highest ws, and the pairs of 2-itemsets sharing a prefix.
+ *
+ * Arguments: pairs of transaction and weight files, default chess.tran chess.pro
+ */
+public class NListBenchmark
+{
+    /** number of 1-items whose N-lists are combined */
+    static final int TOP_ITEMS = 40;
+
+    public static void main(String [] arg) throws IOException
+    {
+        if (arg.length == 0)
+            arg = new String[] { fileToPath("run/chess.tran"), fileToPath("run/chess.pro") };
+
+        for (int f = 0; f + 1 < arg.length; f += 2)
+        {
+            List<NList[]> pairs = pairs(TransactionDb.load(arg[f], arg[f + 1]));
+            long length = 0;
+            for (NList[] pair : pairs)
+                length += pair[0].size + pair[1].size;
+
+            NListArena arena = new NListArena();
+            for (NList[] pair : pairs)
+            {
+                NList merged = NList.combine(pair[0], pair[1], arena);
+                NList nested = nestedCombination(pair[0], pair[1], arena);
+                if (merged.sumTw != nested.sumTw || !sameNodeCodes(merged, nested))
+                    System.out.println("Error: different combination results");
+            }
+
+            System.out.println("========== " + arg[f] + " ============");
+            System.out.println(" Number of combinations: " + pairs.size());
+            System.out.println(" Avg. N-list length: " + (length / (2.0 * pairs.size())));
+            double nestedTime = time(pairs, false);
+            double mergeTime = time(pairs, true);
+            System.out.println(" Nested loops ~: " + nestedTime + " us/combination");
+            System.out.println(" Merge ~: " + mergeTime + " us/combination");
+            System.out.println(" Speedup: " + (nestedTime / mergeTime));
+        }
+    }
+
+    /** Average time of one combination in microseconds, after warming up */
+    static double time(List<NList[]> pairs, boolean merge)
+    {
+        float check = 0;
+        long best = Long.MAX_VALUE;
+        NListArena arena = new NListArena();
+        for (int round = 0; round < 10; round++)
+        {
+            arena.reset();
+            long start = System.nanoTime();
+            for (NList[] pair : pairs)
+                check += merge ? NList.combine(pair[0], pair[1], arena).sumTw : nestedCombination(pair[0], pair[1], arena).sumTw;
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (check == Float.NEGATIVE_INFINITY)
+            System.out.println(check);
+        return best / 1000.0 / pairs.size();
+    }
+
+    /** Build the WPPC tree of a database and return the N-list pairs to combine */
+    static List<NList[]> pairs(TransactionDb db)
+    {
+        db = db.rankItems();
+        int numOfItems = db.maxItem + 1;
+        WppcTree tree = new WppcTree(1 << 16);
+        for (int t = 0; t < db.size(); t++)
+            tree.insert(db.items, db.offsets[t], db.offsets[t + 1], db.tw[t]);
+        NListArena arena = new NListArena();
+        NList[] nLists = tree.generateNLists(numOfItems, arena);
+
+        int top = Math.min(TOP_ITEMS, numOfItems);
+        List<NList[]> pairs = new ArrayList<>();
+        for (int i = top - 1; i > 0; i--)
+        {
+            List<NList> prefixClass = new ArrayList<>();
+            for (int j = i - 1; j >= 0; j--)
+            {
+                pairs.add(new NList[] { nLists[i], nLists[j] });
+                prefixClass.add(NList.combine(nLists[i], nLists[j], arena));
+            }
+            // 2-itemsets of the class of item i, those added later hold the nodes of the ancestor items
+            for (int x = prefixClass.size() - 1; x > 0; x--)
+                for (int y = x - 1; y >= 0; y--)
+                    pairs.add(new NList[] { prefixClass.get(y), prefixClass.get(x) });
+        }
+        return pairs;
+    }
+
+    /** The former combination, comparing every node code of b with every node code of a */
+    static NList nestedCombination(NList a, NList b, NListArena arena)
+    {
+        NList result = new NList(arena, Math.min(a.size, b.size));
+        double sum = 0;
+        for (int j = 0; j < b.size; j++)
+        {
+            boolean found = false;
+            double twB = 0;
+            for (int i = 0; i < a.size; i++)
+            {
+                if (b.preOrder(j) < a.preOrder(i) && b.postOrder(j) > a.postOrder(i))
+                {
+                    found = true;
+                    twB += a.tw(i);
+                    sum += a.tw(i);
+                }
+            }
+            if (found)
+                result.add(b.preOrder(j), b.postOrder(j), twB);
+        }
+        result.sumTw = sum;
+        return result;
+    }
+
+    /** Whether two N-lists hold the same node codes */
+    static boolean sameNodeCodes(NList a, NList b)
+    {
+        if (a.size != b.size)
+            return false;
+        for (int i = 0; i < a.size; i++)
+        {
+            if (a.preOrder(i) != b.preOrder(i) || a.postOrder(i) != b.postOrder(i) || a.tw(i) != b.tw(i))
+                return false;
+        }
+        return true;
+    }
+
+    static String fileToPath(String fileName) throws UnsupportedEncodingException
+    {
+        URL url = NListBenchmark.class.getClassLoader().getResource(fileName);
+        return java.net.URLDecoder.decode(url.getPath(),"UTF-8");
+    }
+}
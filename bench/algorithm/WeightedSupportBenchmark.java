@@ -0,0 +1,84 @@
+package algorithm;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+
+/**
+ * Compare the time of the first phase (weighted support of the 1-items) when
+ * the database is rescanned once per item with a single scan of the database.
+ *
+ * Arguments: pairs of transaction and weight files, default chess.tran chess.pro
+ */
+public class WeightedSupportBenchmark
+{
+    public static void main(String [] arg) throws IOException
+    {
+        if (arg.length == 0)
+            arg = new String[] { fileToPath("run/chess.tran"), fileToPath("run/chess.pro") };
+
+        for (int f = 0; f + 1 < arg.length; f += 2)
+        {
+            TransactionDb db = TransactionDb.load(arg[f], arg[f + 1]);
+
+            // warm up both versions before measuring
+            for (int i = 0; i < 5; i++)
+            {
+                rescanPerItem(db);
+                db.itemTwSums();
+            }
+
+            long start = System.nanoTime();
+            double[] rescan = rescanPerItem(db);
+            long rescanTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double[] singleScan = db.itemTwSums();
+            long singleScanTime = System.nanoTime() - start;
+
+            for (int item = 0; item < rescan.length; item++)
+                if (rescan[item] != singleScan[item])
+                    System.out.println("Error: different weighted support for item " + item);
+
+            System.out.println("========== " + arg[f] + " ============");
+            System.out.println(" Number of transactions: " + db.size());
+            System.out.println(" Rescan per item ~: " + (rescanTime / 1000000.0) + " ms");
+            System.out.println(" Single scan ~: " + (singleScanTime / 1000000.0) + " ms");
+            System.out.println(" Speedup: " + ((double) rescanTime / singleScanTime));
+        }
+    }
+
+    /** The first phase as it used to be: one scan of the database per item */
+    static double[] rescanPerItem(TransactionDb db)
+    {
+        int maxItem = -1;
+        for (int t = 0; t < db.size(); t++)
+            for (int j = db.start(t); j < db.end(t); j++)
+                maxItem = Math.max(maxItem, db.item(j));
+
+        double[] sumTw = new double[maxItem + 1];
+        boolean[] seen = new boolean[maxItem + 1];
+        for (int t = 0; t < db.size(); t++)
+            for (int j = db.start(t); j < db.end(t); j++)
+                seen[db.item(j)] = true;
+
+        for (int item = 0; item <= maxItem; item++)
+        {
+            if (!seen[item])
+                continue;
+            double ws = 0;
+            for (int t = 0; t < db.size(); t++)
+                for (int j = db.end(t) - 1; j >= db.start(t); j--)
+                    if (db.item(j) == item)
+                        ws += db.tw(t);
+            sumTw[item] = ws;
+        }
+        return sumTw;
+    }
+
+    static String fileToPath(String fileName) throws UnsupportedEncodingException
+    {
+        URL url = WeightedSupportBenchmark.class.getClassLoader().getResource(fileName);
+        return java.net.URLDecoder.decode(url.getPath(),"UTF-8");
+    }
+}
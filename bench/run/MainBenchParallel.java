@@ -0,0 +1,113 @@
+package run;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import algorithm.TFWID;
+import algorithm.TFWIDplus;
+import algorithm.TFWIH;
+import algorithm.TFWIN;
+import algorithm.TFWINplus;
+import algorithm.TFWIT;
+import algorithm.TFWITplus;
+import algorithm.TransactionDb;
+
+/**
+ * Measure how the depth-first search of each algorithm scales with the number
+ * of threads, from 1 to the number of available processors.
+ *
+ * Arguments: rank, then pairs of transaction and weight files, default 1000 chess.tran chess.pro
+ */
+public class MainBenchParallel
+{
+    public static void main(String [] arg) throws IOException {
+
+        if (arg.length == 0)
+            arg = new String[] { "1000", fileToPath("chess.tran"), fileToPath("chess.pro") };
+
+        int rank = Integer.parseInt(arg[0]);
+        int processors = Runtime.getRuntime().availableProcessors();
+        File output = File.createTempFile("bench", ".txt");
+        output.deleteOnExit();
+
+        for (int f = 1; f + 1 < arg.length; f += 2)
+        {
+            TransactionDb db = TransactionDb.load(arg[f], arg[f + 1]);
+            System.out.println("========== " + arg[f] + " rank " + rank + " ============");
+            for (String algorithm : new String[] { "TFWIN", "TFWINplus", "TFWIT", "TFWITplus", "TFWID", "TFWIDplus", "TFWIH" })
+            {
+                long sequential = 0;
+                for (int threads = 1; threads <= processors; threads = (threads == processors) ? threads + 1 : Math.min(2 * threads, processors))
+                {
+                    // best of 3 runs after a warm-up run
+                    long best = Long.MAX_VALUE;
+                    for (int i = 0; i < 4; i++)
+                    {
+                        long start = System.nanoTime();
+                        run(algorithm, db, output.getPath(), rank, threads);
+                        if (i > 0)
+                            best = Math.min(best, System.nanoTime() - start);
+                    }
+                    if (threads == 1)
+                        sequential = best;
+                    System.out.println(" " + algorithm + " threads: " + threads + " time ~: " + (best / 1000000.0) + " ms speedup: " + ((double) sequential / best));
+                }
+            }
+        }
+    }
+
+    static void run(String algorithm, TransactionDb db, String output, int rank, int threads) throws IOException
+    {
+        switch (algorithm)
+        {
+            case "TFWIN":
+                TFWIN tfwin = new TFWIN();
+                tfwin.setDepthFirst(true);
+                tfwin.setParallelism(threads);
+                tfwin.executeAlogrithm(db, output, rank);
+                break;
+            case "TFWINplus":
+                TFWINplus tfwinPlus = new TFWINplus();
+                tfwinPlus.setDepthFirst(true);
+                tfwinPlus.setParallelism(threads);
+                tfwinPlus.executeAlogrithm(db, output, rank);
+                break;
+            case "TFWIT":
+                TFWIT tfwit = new TFWIT();
+                tfwit.setDepthFirst(true);
+                tfwit.setParallelism(threads);
+                tfwit.executeAlogrithm(db, output, rank);
+                break;
+            case "TFWITplus":
+                TFWITplus tfwitPlus = new TFWITplus();
+                tfwitPlus.setDepthFirst(true);
+                tfwitPlus.setParallelism(threads);
+                tfwitPlus.executeAlogrithm(db, output, rank);
+                break;
+            case "TFWID":
+                TFWID tfwid = new TFWID();
+                tfwid.setDepthFirst(true);
+                tfwid.setParallelism(threads);
+                tfwid.executeAlogrithm(db, output, rank);
+                break;
+            case "TFWIDplus":
+                TFWIDplus tfwidPlus = new TFWIDplus();
+                tfwidPlus.setDepthFirst(true);
+                tfwidPlus.setParallelism(threads);
+                tfwidPlus.executeAlogrithm(db, output, rank);
+                break;
+            default:
+                TFWIH tfwih = new TFWIH();
+                tfwih.setDepthFirst(true);
+                tfwih.setParallelism(threads);
+                tfwih.executeAlogrithm(db, output, rank);
+                break;
+        }
+    }
+
+    public static String fileToPath(String fileName) throws UnsupportedEncodingException {
+        URL url = MainBenchParallel.class.getResource(fileName);
+        return java.net.URLDecoder.decode(url.getPath(),"UTF-8");
+    }
+}
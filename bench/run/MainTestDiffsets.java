@@ -0,0 +1,144 @@
+package run;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import algorithm.TFWID;
+import algorithm.TFWIDplus;
+import algorithm.TFWIH;
+import algorithm.TFWIT;
+
+/**
+ * Regression test of the diffset miners against TFWIT, which computes every
+ * ws from a tidset: on small databases where the top-rank-k reaches itemsets
+ * that no transaction contains, a diffset miner must output the same
+ * itemsets, with the same ws up to float rounding, level by level and depth
+ * first. Exits with status 1 if an output differs.
+ */
+public class MainTestDiffsets
+{
+    /** largest difference between the ws of an itemset in two outputs */
+    static final float TOLERANCE = 1e-5f;
+
+    /** A miner run on a database, in one mode */
+    interface Miner
+    {
+        void run(String inputTrans, String inputWeights, String output, int rank, boolean depthFirst) throws IOException;
+    }
+
+    public static void main(String [] arg) throws IOException
+    {
+        String[][] databases = { { "ex.tran", "ex.weight", "17" }, { "ex4.tran", "ex4.pro", "20" } };
+        String[] names = { "TFWID", "TFWIDplus", "TFWIDplus with pairs on 3 threads", "TFWIH" };
+        Miner[] miners = {
+            (trans, weights, output, rank, depthFirst) ->
+            {
+                TFWID algorithm = new TFWID();
+                algorithm.setDepthFirst(depthFirst);
+                algorithm.executeAlogrithm(trans, weights, output, rank);
+            },
+            (trans, weights, output, rank, depthFirst) ->
+            {
+                TFWIDplus algorithm = new TFWIDplus();
+                algorithm.setDepthFirst(depthFirst);
+                algorithm.executeAlogrithm(trans, weights, output, rank);
+            },
+            (trans, weights, output, rank, depthFirst) ->
+            {
+                TFWIDplus algorithm = new TFWIDplus();
+                algorithm.setDepthFirst(depthFirst);
+                algorithm.setPairWs(true);
+                algorithm.setParallelism(3);
+                algorithm.executeAlogrithm(trans, weights, output, rank);
+            },
+            (trans, weights, output, rank, depthFirst) ->
+            {
+                TFWIH algorithm = new TFWIH();
+                algorithm.setDepthFirst(depthFirst);
+                algorithm.executeAlogrithm(trans, weights, output, rank);
+            },
+        };
+
+        boolean passed = true;
+        for (String[] database : databases)
+        {
+            String inputTrans = fileToPath(database[0]);
+            String inputWeights = fileToPath(database[1]);
+            int rank = Integer.parseInt(database[2]);
+
+            File expectedFile = File.createTempFile("TFWIT", ".txt");
+            expectedFile.deleteOnExit();
+            TFWIT reference = new TFWIT();
+            reference.executeAlogrithm(inputTrans, inputWeights, expectedFile.getPath(), rank);
+            Map<String, Float> expected = readOutput(expectedFile);
+
+            for (int m = 0; m < miners.length; m++)
+            {
+                for (boolean depthFirst : new boolean[] { false, true })
+                {
+                    File outputFile = File.createTempFile(names[m], ".txt");
+                    outputFile.deleteOnExit();
+                    miners[m].run(inputTrans, inputWeights, outputFile.getPath(), rank, depthFirst);
+                    String difference = compare(expected, readOutput(outputFile));
+                    String test = names[m] + (depthFirst ? " depth first" : " level-wise") + " on " + database[0] + ", rank " + rank;
+                    System.out.println((difference == null ? "OK   " : "FAIL ") + test + (difference == null ? "" : ": " + difference));
+                    passed &= (difference == null);
+                }
+            }
+        }
+        if (!passed)
+            System.exit(1);
+    }
+
+    /** The ws of each itemset of an output file, by its sorted items */
+    static Map<String, Float> readOutput(File file) throws IOException
+    {
+        Map<String, Float> itemsets = new HashMap<>();
+        for (String line : Files.readAllLines(file.toPath()))
+        {
+            String[] columns = line.split("\\|");
+            if (columns.length < 4 || !columns[1].trim().matches("\\d+"))
+                continue;
+            float ws = Float.parseFloat(columns[3].trim());
+            for (String itemset : columns[2].trim().split("(?<=\\]) "))
+            {
+                // the miners list the items of an itemset in different orders
+                String[] items = itemset.trim().replaceAll("[\\[\\]]", "").split(", ");
+                Arrays.sort(items, Comparator.comparingInt(Integer::parseInt));
+                itemsets.put(Arrays.toString(items), ws);
+            }
+        }
+        return itemsets;
+    }
+
+    /** A difference between two outputs, or null if they hold the same itemsets with the same ws */
+    static String compare(Map<String, Float> expected, Map<String, Float> actual)
+    {
+        for (Map.Entry<String, Float> e : actual.entrySet())
+        {
+            Float ws = expected.get(e.getKey());
+            if (ws == null)
+                return e.getKey() + " with ws " + e.getValue() + " is not expected";
+            if (Math.abs(ws - e.getValue()) > TOLERANCE)
+                return e.getKey() + " has ws " + e.getValue() + " instead of " + ws;
+        }
+        for (String itemset : expected.keySet())
+        {
+            if (!actual.containsKey(itemset))
+                return itemset + " is missing";
+        }
+        return null;
+    }
+
+    public static String fileToPath(String fileName) throws UnsupportedEncodingException {
+        URL url = MainTestDiffsets.class.getResource(fileName);
+        return java.net.URLDecoder.decode(url.getPath(),"UTF-8");
+    }
+}
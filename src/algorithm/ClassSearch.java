@@ -0,0 +1,193 @@
+package algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class exploring the equivalence classes of the depth-first search, on the
+ * calling thread or in parallel on a ForkJoinPool.
+ *
+ * A class holds the itemsets sharing a prefix, ordered like their last item
+ * in the 1-items. Each member is joined with the earlier members of its
+ * class, and the unions that can enter the top-rank-k form the class of that
+ * member, explored in turn.
+ *
+ * In parallel every member of a large class is a task, so an idle thread
+ * steals the members, and the classes below them, that the busy threads have
+ * not reached yet. All the tasks read the same threshold of the top-rank-k,
+ * which rises as soon as any thread finds a better itemset. The itemsets
+ * found do not depend on the number of threads, only the order in which they
+ * enter the top-rank-k does.
+ *
+ * The memory of the unions of a member may be freed in bulk once the class
+ * they form is explored, through Join.mark and Join.release: each thread
+ * frees its memory in the reverse order it took it.
+ */
+class ClassSearch<T extends Itemset>
+{
+    /** The join of an algorithm, called by several threads at once */
+    interface Join<T>
+    {
+        /**
+         * Join a member of a class with an earlier member of the class
+         *
+         * @param cI the member
+         * @param cJ the earlier member
+         * @param threshold the threshold of the top-rank-k
+         * @return the union of cI and cJ, or null if its ws is below the threshold
+         */
+        T join(T cI, T cJ, float threshold);
+
+        /**
+         * Prepare the class formed by the unions of a member, before it is explored
+         *
+         * @param cI the member
+         * @param children the unions of cI with the earlier members of its class
+         */
+        default void formClass(T cI, List<T> children)
+        {
+        }
+
+        /**
+         * Mark the memory of the calling thread before a member is joined,
+         * see release
+         */
+        default long mark()
+        {
+            return 0;
+        }
+
+        /**
+         * Free the memory the calling thread took since a mark, once the
+         * class formed by the member, and the classes below it, are explored
+         */
+        default void release(long mark)
+        {
+        }
+    }
+
+    /** classes with fewer members are explored by the task that found them */
+    static final int FORK_THRESHOLD = 8;
+
+    private final TopRankK<T> topRankK;
+    private final Join<T> join;
+
+    ClassSearch(TopRankK<T> topRankK, Join<T> join)
+    {
+        this.topRankK = topRankK;
+        this.join = join;
+    }
+
+    /**
+     * Explore a class and all the classes below it
+     *
+     * @param members the members of the class
+     * @param parallelism the number of threads, 1 to explore on the calling thread
+     */
+    void mine(List<T> members, int parallelism)
+    {
+        if (parallelism <= 1)
+        {
+            mine(members);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            pool.invoke(new ClassTask(members));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /** Explore a class on the calling thread */
+    private void mine(List<T> members)
+    {
+        for (int i = 1; i < members.size(); i++)
+        {
+            long mark = join.mark();
+            mine(children(members, i));
+            join.release(mark);
+        }
+    }
+
+    /** Join member i of a class with the earlier members, adding the unions to the top-rank-k */
+    private List<T> children(List<T> members, int i)
+    {
+        List<T> children = new ArrayList<>();
+        T cI = members.get(i);
+        if (cI.ws < topRankK.threshold())
+            return children;
+
+        for (int j = 0; j < i; j++)
+        {
+            T cJ = members.get(j);
+            float threshold = topRankK.threshold();
+            if (cJ.ws < threshold)
+                continue;
+            T c = join.join(cI, cJ, threshold);
+            if (c != null && topRankK.add(c))
+                children.add(c);
+        }
+        join.formClass(cI, children);
+        return children;
+    }
+
+    /** Task exploring a class, with one subtask per member */
+    private class ClassTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> members;
+
+        ClassTask(List<T> members)
+        {
+            this.members = members;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (members.size() < FORK_THRESHOLD)
+            {
+                mine(members);
+                return;
+            }
+
+            List<MemberTask> tasks = new ArrayList<>();
+            for (int i = 1; i < members.size(); i++)
+                tasks.add(new MemberTask(members, i));
+            invokeAll(tasks);
+        }
+    }
+
+    /** Task joining a member of a class and exploring the class it forms */
+    private class MemberTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> members;
+        private final int i;
+
+        MemberTask(List<T> members, int i)
+        {
+            this.members = members;
+            this.i = i;
+        }
+
+        @Override
+        protected void compute()
+        {
+            // the subtasks forked below have all completed when compute returns,
+            // and those the thread ran meanwhile released their own memory
+            long mark = join.mark();
+            new ClassTask(children(members, i)).compute();
+            join.release(mark);
+        }
+    }
+}
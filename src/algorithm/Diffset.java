@@ -0,0 +1,98 @@
+package algorithm;
+
+/**
+ * Class joining diffsets, the transactions of the prefix of an itemset that
+ * do not contain it, shared by TFWID, TFWIDplus and TFWIH.
+ *
+ * The diffset of a 1-item is its tidset. The union of the 1-items x and y
+ * has the diffset t(x) - t(y), and the union of two itemsets PX and PY of
+ * the same class has the diffset d(PY) - d(PX). Either way the union extends
+ * its first member, whose sum of tw minus the tw of the diffset is the sum of
+ * tw of the union, and whose support minus the size of the diffset is the
+ * support of the union. The sums are differences in double, rounded to float
+ * once by the ws, which may leave a remainder where it should be 0, so a
+ * union is rejected by its support.
+ */
+class Diffset
+{
+    private Diffset()
+    {
+    }
+
+    /**
+     * Join two members of a class into the diffset of their union, relative
+     * to cI, abandoning as soon as the sum of the tw of the diffset exceeds
+     * maxSumTw: the ws of the union is the ws of cI minus that sum, so it can
+     * only decrease as the walk goes on.
+     *
+     * @param cI the member the union extends
+     * @param cJ another member of the class of cI
+     * @param tw the tw of each transaction
+     * @param maxSumTw the largest sum of tw the diffset may reach
+     * @param buffer receives the sorted transaction ids of the diffset, with the sum of their tw
+     * @return false if the join was abandoned or if no transaction contains the union
+     */
+    static boolean join(FWIset cI, FWIset cJ, float[] tw, float maxSumTw, JoinBuffer buffer)
+    {
+        boolean complete;
+        if (cI.prefix != null && cJ.prefix != null)
+            complete = combine(cI.diffset, cJ.diffset, tw, maxSumTw, buffer);
+        else
+            complete = combine(cJ.diffset, cI.diffset, tw, maxSumTw, buffer);
+        return complete && buffer.size < cI.support;
+    }
+
+    /** The ws of the union of the last join of cI, never below 0 */
+    static float ws(FWIset cI, JoinBuffer buffer, float ttw)
+    {
+        return (float) (Math.max(0, cI.sumTw - buffer.sumTw) / ttw);
+    }
+
+    /** The union of the last join of two members, with its diffset, support, sum of tw and ws */
+    static FWIset union(FWIset cI, FWIset cJ, JoinBuffer buffer, float ws)
+    {
+        FWIset c = new FWIset(cI, cJ.item);
+        c.diffset = buffer.copyTids();
+        c.support = cI.support - buffer.size;
+        c.sumTw = cI.sumTw - buffer.sumTw;
+        c.ws = ws;
+        return c;
+    }
+
+    /**
+     * Perform combinations: the transactions of b that are not in a,
+     * abandoning as soon as the sum of their tw exceeds maxSumTw
+     *
+     * @param a sorted transaction ids
+     * @param b sorted transaction ids
+     * @param tw the tw of each transaction
+     * @param maxSumTw the largest sum of tw the result may reach
+     * @param buffer receives the sorted transaction ids of b that are not in a, with the sum of their tw
+     * @return false if the combination was abandoned
+     */
+    static boolean combine(int[] a, int[] b, float[] tw, float maxSumTw, JoinBuffer buffer)
+    {
+        int[] result = buffer.tids(b.length);
+        int n = 0;
+        double sumTw = 0;
+        int i = 0;
+        for (int j = 0; j < b.length; j++)
+        {
+            int bJ = b[j];
+            while (i < a.length && a[i] < bJ)
+                i++;
+            if (i == a.length || a[i] != bJ)
+            {
+                result[n++] = bJ;
+                sumTw += tw[bJ];
+                if (sumTw > maxSumTw)
+                    return false;
+            }
+        }
+
+        buffer.bitmap = false;
+        buffer.size = n;
+        buffer.sumTw = sumTw;
+        return true;
+    }
+}
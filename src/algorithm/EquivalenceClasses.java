@@ -0,0 +1,58 @@
+package algorithm;
+
+/**
+ * Class grouping the candidates of a level by equivalence class, i.e. by
+ * their prefix of k - 1 items, so that a candidate is only joined with the
+ * candidates of its own class.
+ *
+ * The candidates of a level are identified by their position in the level
+ * and each one carries the id of its class: the position of its prefix
+ * itemset in the previous level (0 for the 1-items, which form one class).
+ */
+class EquivalenceClasses
+{
+    /** positions of the candidates, grouped by class and ascending inside a class */
+    final int[] members;
+
+    /** start in members of the class of each candidate */
+    final int[] start;
+
+    /** index of each candidate inside its class */
+    final int[] indexInClass;
+
+    /**
+     * Group candidates by class with a counting sort
+     *
+     * @param classIds the class id of the candidate at each position, between 0 and the size of the previous level
+     */
+    EquivalenceClasses(int[] classIds)
+    {
+        int numOfClasses = 0;
+        for (int id : classIds)
+            numOfClasses = Math.max(numOfClasses, id + 1);
+
+        int[] classStart = new int[numOfClasses + 1];
+        for (int id : classIds)
+            classStart[id + 1]++;
+        for (int c = 0; c < numOfClasses; c++)
+            classStart[c + 1] += classStart[c];
+
+        members = new int[classIds.length];
+        start = new int[classIds.length];
+        indexInClass = new int[classIds.length];
+        int[] classSize = new int[numOfClasses];
+        for (int i = 0; i < classIds.length; i++)
+        {
+            int id = classIds[i];
+            start[i] = classStart[id];
+            indexInClass[i] = classSize[id]++;
+            members[start[i] + indexInClass[i]] = i;
+        }
+    }
+
+    /** Position of the x-th candidate of the class of candidate i */
+    int member(int i, int x)
+    {
+        return members[start[i] + x];
+    }
+}
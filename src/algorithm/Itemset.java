@@ -0,0 +1,107 @@
+package algorithm;
+
+import java.util.Comparator;
+
+/**
+ * Class representing an itemset with its weighted support, the part shared by the itemsets of all the algorithms
+ *
+ * An itemset is stored as its prefix, the itemset of all its items but the
+ * last one, and its last item. The union of two members of a class is the
+ * first member extended by the last item of the second, so a candidate takes
+ * the same memory at any length and shares its first items with its prefix.
+ * The items are only materialised for the output and for sorting.
+ */
+class Itemset
+{
+    /** the itemset of all the items but the last one, null for a 1-item */
+    final Itemset prefix;
+
+    /** the last item */
+    final int item;
+
+    /** number of items */
+    final int length;
+
+    /** the first item, fixed by the prefix */
+    final int firstItem;
+
+    float ws;
+
+    /** position of the prefix itemset in the previous level, the equivalence class of this itemset */
+    int classId;
+
+    /**
+     * Create an itemset extending a prefix by an item
+     *
+     * @param prefix the prefix itemset, null for a 1-item
+     * @param item the last item
+     */
+    Itemset(Itemset prefix, int item)
+    {
+        this.prefix = prefix;
+        this.item = item;
+        this.length = (prefix == null) ? 1 : prefix.length + 1;
+        this.firstItem = (prefix == null) ? item : prefix.firstItem;
+    }
+
+    /** The items, from the first to the last */
+    int[] items()
+    {
+        int[] items = new int[length];
+        Itemset s = this;
+        for (int i = length - 1; i >= 0; i--)
+        {
+            items[i] = s.item;
+            s = s.prefix;
+        }
+        return items;
+    }
+
+    /** The original items of a ranked database, from the first to the last */
+    int[] items(int[] itemOf)
+    {
+        int[] items = items();
+        for (int i = 0; i < items.length; i++)
+            items[i] = itemOf[items[i]];
+        return items;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int item : items())
+        {
+            sb.append(item);
+            sb.append(' ');
+        }
+        sb.append("#WS: ");
+        sb.append(this.ws);
+        return sb.toString();
+    }
+
+    /** Order of the itemsets of a rank: item by item, an itemset before its supersets */
+    static Comparator<Itemset> itemsComparator = new Comparator<Itemset>()
+    {
+        @Override
+        public int compare(Itemset x, Itemset y)
+        {
+            // cut the longer itemset to the length of the shorter one
+            Itemset a = x;
+            Itemset b = y;
+            while (a.length > b.length)
+                a = a.prefix;
+            while (b.length > a.length)
+                b = b.prefix;
+            // walk back to the shared prefix, the last difference met is the first one
+            int order = Integer.compare(x.length, y.length);
+            while (a != b)
+            {
+                if (a.item != b.item)
+                    order = Integer.compare(a.item, b.item);
+                a = a.prefix;
+                b = b.prefix;
+            }
+            return order;
+        }
+    };
+}
@@ -0,0 +1,59 @@
+package algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Class holding the result of the last tidset or diffset join of a thread.
+ *
+ * A join writes its transactions into the buffer, which grows to the largest
+ * join of the thread and is then reused, and only a join whose union is kept
+ * copies them into arrays of its own. A rejected join allocates nothing.
+ */
+class JoinBuffer
+{
+    /** sorted transaction ids of the last join, unless it is a bitmap */
+    int[] tids = new int[64];
+
+    /** bitmap of the last join, if it is one */
+    long[] bits = new long[0];
+
+    /** whether the last join is a bitmap */
+    boolean bitmap;
+
+    /** number of words of the bitmap of the last join */
+    int words;
+
+    /** number of transactions of the last join */
+    int size;
+
+    /** sum of the tw of the transactions of the last join, in double */
+    double sumTw;
+
+    /** The transaction id buffer, grown to hold at least capacity ids */
+    int[] tids(int capacity)
+    {
+        if (tids.length < capacity)
+            tids = new int[Math.max(capacity, 2 * tids.length)];
+        return tids;
+    }
+
+    /** The bitmap buffer, grown to hold at least words words */
+    long[] bits(int words)
+    {
+        if (bits.length < words)
+            bits = new long[words];
+        return bits;
+    }
+
+    /** A copy of the transaction ids of the last join */
+    int[] copyTids()
+    {
+        return Arrays.copyOf(tids, size);
+    }
+
+    /** A copy of the bitmap of the last join */
+    long[] copyBits()
+    {
+        return Arrays.copyOf(bits, words);
+    }
+}
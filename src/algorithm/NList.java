@@ -0,0 +1,185 @@
+package algorithm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Class representing an N-list: the node codes (PP-codes) of a list of WPPC
+ * tree nodes in pre-order.
+ *
+ * The node codes are stored off the heap in an NListArena, one after another
+ * as the pre-order code, the post-order code and the tw of the node, so an
+ * N-list is only valid until the memory of its arena is freed. The tw is a
+ * double, so the tw of an itemset is rounded to float once, by its ws,
+ * whichever nodes its sum went through.
+ */
+class NList
+{
+    /** bytes of a node code */
+    static final int CODE_BYTES = 16;
+
+    /** the arena chunk holding the node codes */
+    final ByteBuffer data;
+
+    /** position of the first node code in data */
+    final int offset;
+
+    /** number of node codes */
+    int size;
+
+    /** sum of the tw of the node codes, in double: the tw of the itemset */
+    double sumTw;
+
+    /** Allocate an empty N-list of a given capacity in an arena */
+    NList(NListArena arena, int capacity)
+    {
+        offset = arena.allocate(capacity * CODE_BYTES);
+        data = arena.current;
+    }
+
+    private NList(ByteBuffer data, int offset, int size, double sumTw)
+    {
+        this.data = data;
+        this.offset = offset;
+        this.size = size;
+        this.sumTw = sumTw;
+    }
+
+    int preOrder(int i)
+    {
+        return data.getInt(offset + i * CODE_BYTES);
+    }
+
+    int postOrder(int i)
+    {
+        return data.getInt(offset + i * CODE_BYTES + 4);
+    }
+
+    double tw(int i)
+    {
+        return data.getDouble(offset + i * CODE_BYTES + 8);
+    }
+
+    void setPostOrder(int i, int post)
+    {
+        data.putInt(offset + i * CODE_BYTES + 4, post);
+    }
+
+    /** Append a node code, within the capacity of the N-list */
+    void add(int pre, int post, double twN)
+    {
+        int position = offset + size * CODE_BYTES;
+        data.putInt(position, pre);
+        data.putInt(position + 4, post);
+        data.putDouble(position + 8, twN);
+        size++;
+    }
+
+    /**
+     * Combine the N-list a of an itemset with the N-list b of an itemset whose
+     * nodes are ancestors of those of a. The result holds each node code of b
+     * that has descendants in a, with the sum of their tw.
+     *
+     * Both lists are in pre-order and the nodes of b are never ancestors of
+     * each other, so the descendants of each node of b form a contiguous run
+     * of a and one merge walk over both lists finds them all. The tw are
+     * accumulated in the same order as a comparison of every pair would.
+     *
+     * @param a the N-list of the descendant itemset
+     * @param b the N-list of the ancestor itemset
+     * @param arena the arena of the result
+     * @return the combined N-list, with the total tw combined in sumTw
+     */
+    static NList combine(NList a, NList b, NListArena arena)
+    {
+        return combine(a, b, UpperBound.NONE, arena);
+    }
+
+    /**
+     * Combine two N-lists like combine(a, b, arena), abandoning as soon as the
+     * tw of the result cannot reach minSumTw: the node codes of a skipped by
+     * the walk have no ancestor in b, so the tw of a minus the tw skipped so
+     * far bounds the tw of the result. A result below minSumTw is abandoned too.
+     *
+     * The result is written straight into the arena, and its memory is given
+     * back when it is abandoned.
+     *
+     * @param a the N-list of the descendant itemset
+     * @param b the N-list of the ancestor itemset
+     * @param minSumTw the sum of tw the result must reach, see UpperBound
+     * @param arena the arena of the result
+     * @return the combined N-list, or null if it was abandoned
+     */
+    static NList combine(NList a, NList b, float minSumTw, NListArena arena)
+    {
+        int offset = arena.allocate(Math.min(a.size, b.size) * CODE_BYTES);
+        ByteBuffer out = arena.current;
+        int end = offset;
+        double sum = 0;
+        double bound = a.sumTw;
+
+        // the node of b holding the last node code of the result, and its tw so far
+        int lastPre = -1;
+        double lastTw = 0;
+
+        // the walk goes through the positions of the node codes in the arena chunks
+        ByteBuffer aData = a.data;
+        ByteBuffer bData = b.data;
+        int i = a.offset;
+        int j = b.offset;
+        int aEnd = a.offset + a.size * CODE_BYTES;
+        int bEnd = b.offset + b.size * CODE_BYTES;
+        while (i < aEnd && j < bEnd)
+        {
+            int aPre = aData.getInt(i);
+            int bPre = bData.getInt(j);
+            if (bPre >= aPre)
+            {
+                // a[i] comes before the subtree of b[j]
+                bound -= aData.getDouble(i + 8);
+                if (bound < minSumTw)
+                {
+                    arena.trim(offset, 0);
+                    return null;
+                }
+                i += CODE_BYTES;
+            }
+            else if (bData.getInt(j + 4) < aData.getInt(i + 4))
+            {
+                // the subtree of b[j] ends before a[i]
+                j += CODE_BYTES;
+            }
+            else
+            {
+                // b[j] is an ancestor of a[i]
+                double aTw = aData.getDouble(i + 8);
+                if (bPre == lastPre)
+                {
+                    lastTw += aTw;
+                }
+                else
+                {
+                    if (end > offset)
+                        out.putDouble(end - CODE_BYTES + 8, lastTw);
+                    out.putInt(end, bPre);
+                    out.putInt(end + 4, bData.getInt(j + 4));
+                    end += CODE_BYTES;
+                    lastPre = bPre;
+                    lastTw = aTw;
+                }
+                sum += aTw;
+                i += CODE_BYTES;
+            }
+        }
+        if (sum < minSumTw)
+        {
+            arena.trim(offset, 0);
+            return null;
+        }
+        if (end > offset)
+            out.putDouble(end - CODE_BYTES + 8, lastTw);
+
+        int size = (end - offset) / CODE_BYTES;
+        arena.trim(offset, size * CODE_BYTES);
+        return new NList(out, offset, size, sum);
+    }
+}
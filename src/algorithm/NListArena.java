@@ -0,0 +1,93 @@
+package algorithm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class allocating N-lists off the heap, in chunks of direct memory that are
+ * freed in bulk.
+ *
+ * The N-lists are allocated one after another in the current chunk, and a
+ * new chunk is taken when one does not fit. reset() frees all the N-lists at
+ * once, and release(mark) those allocated since mark(), so the chunks are
+ * reused from one level, or one subtree, to the next instead of becoming
+ * garbage. An N-list must not be read once its memory is freed.
+ *
+ * An arena is not thread safe: each thread allocates in its own arena, while
+ * any thread may read the N-lists of any arena.
+ */
+class NListArena
+{
+    /** default size in bytes of a chunk */
+    static final int CHUNK_BYTES = 1 << 20;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /** index of the chunk being filled, -1 before the first allocation */
+    private int chunk = -1;
+
+    /** position of the free memory in the chunk being filled */
+    private int position = 0;
+
+    /** the chunk of the last allocation */
+    ByteBuffer current;
+
+    /**
+     * Allocate memory in the current chunk, or in the next one if it does not fit
+     *
+     * @param bytes the number of bytes
+     * @return the position of the memory in current
+     */
+    int allocate(int bytes)
+    {
+        if (chunk < 0 || position + bytes > current.capacity())
+        {
+            // a chunk too small for the request is skipped until the next reset
+            do
+            {
+                chunk++;
+                if (chunk == chunks.size())
+                    chunks.add(ByteBuffer.allocateDirect(Math.max(CHUNK_BYTES, bytes)).order(ByteOrder.nativeOrder()));
+            }
+            while (chunks.get(chunk).capacity() < bytes);
+            current = chunks.get(chunk);
+            position = 0;
+        }
+        int offset = position;
+        position += bytes;
+        return offset;
+    }
+
+    /**
+     * Shrink the last allocation, freeing its end
+     *
+     * @param offset the position returned by the last allocation
+     * @param bytes the number of bytes kept, 0 to free it all
+     */
+    void trim(int offset, int bytes)
+    {
+        position = offset + bytes;
+    }
+
+    /** The current allocation point, to free what is allocated after it with release */
+    long mark()
+    {
+        return ((long) chunk << 32) | position;
+    }
+
+    /** Free all the memory allocated since a mark */
+    void release(long mark)
+    {
+        chunk = (int) (mark >> 32);
+        position = (int) mark;
+        current = (chunk < 0) ? null : chunks.get(chunk);
+    }
+
+    /** Free all the memory of the arena, keeping its chunks for the next allocations */
+    void reset()
+    {
+        release(-1L << 32);
+    }
+}
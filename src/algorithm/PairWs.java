@@ -0,0 +1,139 @@
+package algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Class holding the sum of the tw of the transactions containing each pair of
+ * items, in a triangular matrix filled during the scan of the database.
+ *
+ * The ws of an itemset is at most the ws of any pair of its items, so the
+ * matrix bounds every join of two itemsets by the pair of their last items,
+ * and the ws of the pairs, with the ws of the items, give a threshold of the
+ * top-rank-k before mining starts.
+ */
+class PairWs
+{
+    /** row of each item in the matrix, -1 for an item of no transaction */
+    private final int[] row;
+
+    /** number of rows */
+    private final int numOfItems;
+
+    /** position of the first pair of each row in sumTw, row * (row - 1) / 2 */
+    private final int[] rowStart;
+
+    /** the sum of the tw of the pair (a, b), for row(a) > row(b), at rowStart[row(a)] + row(b) */
+    private final float[] sumTw;
+
+    /**
+     * Create an empty matrix for the items of a database
+     *
+     * @param itemCounts the number of occurrences of each item
+     * @throws IllegalArgumentException if there are too many items for a matrix
+     */
+    PairWs(int[] itemCounts)
+    {
+        row = new int[itemCounts.length];
+        int n = 0;
+        for (int item = 0; item < itemCounts.length; item++)
+            row[item] = (itemCounts[item] > 0) ? n++ : -1;
+        numOfItems = n;
+
+        long size = (long) n * (n - 1) / 2;
+        if (size > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many items for a pair matrix: " + n);
+        sumTw = new float[(int) size];
+        rowStart = new int[n];
+        for (int r = 1; r < n; r++)
+            rowStart[r] = rowStart[r - 1] + r - 1;
+    }
+
+    /**
+     * Add the tw of a transaction to all the pairs of its items
+     *
+     * @param items the items of the database
+     * @param start the position of the first item of the transaction
+     * @param end the position after the last item of the transaction
+     * @param twT the transaction weight
+     */
+    void addTransaction(int[] items, int start, int end, float twT)
+    {
+        for (int i = start + 1; i < end; i++)
+        {
+            int a = row[items[i]];
+            for (int j = start; j < i; j++)
+            {
+                int b = row[items[j]];
+                if (a != b)
+                    sumTw[index(a, b)] += twT;
+            }
+        }
+    }
+
+    /** The sum of the tw of the transactions containing two distinct items */
+    float sumTw(int itemA, int itemB)
+    {
+        return sumTw[index(row[itemA], row[itemB])];
+    }
+
+    /** Position of the pair of two distinct rows in sumTw */
+    private int index(int a, int b)
+    {
+        return (a > b) ? rowStart[a] + b : rowStart[b] + a;
+    }
+
+    /**
+     * Whether the union of two members of a class cannot reach a sum of tw,
+     * by the pair of the last items of the members
+     *
+     * @param a a member of a class
+     * @param b another member of the class
+     * @param minSumTw the sum of tw the union must reach, see UpperBound
+     */
+    boolean prunes(Itemset a, Itemset b, float minSumTw)
+    {
+        return sumTw(a.item, b.item) < minSumTw;
+    }
+
+    /**
+     * A threshold the ws of the k-th rank is sure to reach: the lowest ws of
+     * the k-th highest rank among the items and the pairs of items, relaxed
+     * by UpperBound.SLACK since the miners sum the tw of a pair in another
+     * order. For the same reason, ws closer than the slack may be a single
+     * rank for a miner, so they are counted as a single rank here.
+     *
+     * @param rank the number k of ranks
+     * @param ws the ws of each item
+     * @param ttw the total transaction weight
+     * @return the threshold, or 0 if the items and pairs have fewer than k ranks
+     */
+    float minThreshold(int rank, float[] ws, float ttw)
+    {
+        float[] values = new float[sumTw.length + numOfItems];
+        int n = 0;
+        for (float s : sumTw)
+        {
+            if (s > 0)
+                values[n++] = s / ttw;
+        }
+        for (int item = 0; item < row.length; item++)
+        {
+            if (row[item] >= 0)
+                values[n++] = ws[item];
+        }
+        Arrays.sort(values, 0, n);
+
+        int distinct = 0;
+        for (int i = n - 1; i >= 0; i--)
+        {
+            if (i == n - 1 || values[i] < values[i + 1] * (1 - UpperBound.SLACK))
+            {
+                // values[i] starts a rank, so values[i + 1] ended the previous one
+                if (distinct == rank)
+                    return values[i + 1] * (1 - UpperBound.SLACK);
+                distinct++;
+            }
+        }
+        return (distinct == rank) ? values[0] * (1 - UpperBound.SLACK) : 0;
+    }
+}
@@ -1,16 +1,12 @@
 package algorithm;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 
 import tools.MemoryLogger;
 
@@ -30,61 +26,57 @@ public class TFWID
     
     /** sum of length of transactions */
     float sumTransLength = 0;
-    
-    /** List of frequent weighted items */
-    List<FWIset> fwis1;
-    
-    /** The complete set of top-rank-k FWIs */
-    List<TRset> fwisTopRankK;
-    
-    /** Total number of frequent weighted itemsets */
-    int countFWIs = 0;      
-    
-    /** Read the input Trans File */
-    ProductDb readTransFile(String filename) throws IOException
-    {
-        ProductDb pDb = new ProductDb();
 
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        String line;
+    /** whether identical transactions are merged before mining */
+    boolean collapseDuplicates = false;
 
-        int i = 0;
-        while (((line = reader.readLine()) != null))
-        {
-            Product p = new Product();
-            p.transID = ++i;
+    /**
+     * Choose whether identical transactions are merged into single records of
+     * summed tw before mining, which shrinks the tree or the tidsets of
+     * databases with many duplicates; off by default
+     */
+    public void setCollapseDuplicates(boolean collapseDuplicates)
+    {
+        this.collapseDuplicates = collapseDuplicates;
+    }
 
-            String[] lineSplited = line.split(" ");
+    /** whether the itemsets are mined depth first instead of level by level */
+    boolean depthFirst = false;
 
-            for (String itemString : lineSplited)
-            {
-                Item item = new Item();
-                item.name = Integer.parseInt(itemString);
-                p.items.add(item); 
-            }
-            sumTransLength += p.items.size();
-            pDb.products.add(p);
-        }
-        reader.close();
+    /**
+     * Choose whether the itemsets are mined level by level (the default) or
+     * depth first, one equivalence class at a time, raising the threshold of
+     * the top-rank-k as soon as an itemset enters it
+     */
+    public void setDepthFirst(boolean depthFirst)
+    {
+        this.depthFirst = depthFirst;
+    }
 
-        return pDb;
+    /** number of threads of the depth-first search */
+    int parallelism = 1;
+
+    /**
+     * Choose the number of threads of the depth-first search, 1 by default.
+     * With more threads the equivalence classes are mined in parallel on a
+     * ForkJoinPool; the result does not depend on the number of threads.
+     */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = parallelism;
     }
     
-    /** Read the input Weights File */
-    Map<Integer, Float> readWeightsFile(String filename) throws IOException
-    {
-        Map<Integer, Float> mapWeights = new HashMap<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        String line;
+    /** List of frequent weighted items */
+    List<FWIset> fwis1;
 
-        int item = 0;
-        while (((line = reader.readLine()) != null))
-        {
-            mapWeights.put(++item, Float.parseFloat(line));
-        }
-        reader.close();
-        return mapWeights;
-    }
+    /** original id of each item, the items being ranked by TransactionDb.rankItems() */
+    int[] itemOf;
+    
+    /** The complete set of top-rank-k FWIs */
+    TopRankK<FWIset> fwisTopRankK;
+    
+    /** Total number of frequent weighted itemsets */
+    int countFWIs = 0;      
     
     /**
      * Run the algorithm
@@ -96,82 +88,71 @@ public class TFWID
      * @throws IOException if error while reading/writting to file
      */
     public void executeAlogrithm(String fileNameOfTrans, String fileNameOfWeights, String output, int rank) throws IOException
+    {
+        executeAlogrithm(TransactionDb.load(fileNameOfTrans, fileNameOfWeights), output, rank);
+    }
+
+    /**
+     * Run the algorithm on a database that is already loaded, for instance
+     * from a binary cache file
+     *
+     * @param db     the weighted database
+     * @param output     the output file path
+     * @param rank     top-rank-k
+     * @throws IOException if error while reading/writting to file
+     */
+    public void executeAlogrithm(TransactionDb db, String output, int rank) throws IOException
     {
         writer = new BufferedWriter(new FileWriter(output));
 
         fwis1 = new ArrayList<>();
-        /** list of serial numbers of each products*/
-        Map<Integer, Float> hashTwOfTrans = new HashMap<>();
-        fwisTopRankK = new ArrayList<>();
+        fwisTopRankK = new TopRankK<>(rank);
 
-        ProductDb pDB = readTransFile(fileNameOfTrans);
-        Map<Integer, Float> mapWeights = readWeightsFile(fileNameOfWeights);
-        numOfTrans = pDB.products.size();
-        
-        // map of weighted support
-        Map<Integer, Float> mapWS = new HashMap<>();
+        // the items are ranked by descending ws, so the 1-items are created in order
+        db = db.rankItems();
+        itemOf = db.itemOf;
 
+        numOfTrans = db.size();
+        sumTransLength = db.sumTransLength();
+        if (collapseDuplicates)
+            db = db.collapseDuplicates();
+        
         // sum of all the transaction weight values in a weighted database
-        float ttw = 0;
-        for (int i = 0; i < pDB.products.size(); i++)
+        float ttw = db.ttw;
+
+        // tidset of each item, filled in a single scan of the database
+        int[][] tidsets = new int[db.maxItem + 1][];
+        int[] tidsetSizes = new int[db.maxItem + 1];
+        // the sum of tw of each item, in the transaction order of its tidset
+        double[] sumTw = new double[db.maxItem + 1];
+        for (int item = 0; item <= db.maxItem; item++)
+            tidsets[item] = new int[db.itemCounts[item]];
+        for (int i = 0; i < db.size(); i++)
         {
-            float sumTransWeight = 0;
-            Product pi = pDB.products.get(i);
-            for (int j = pi.items.size() - 1; j >= 0; j--)
+            for (int j = db.offsets[i + 1] - 1; j >= db.offsets[i]; j--)
             {
-                Integer item = pi.items.get(j).name;
-                mapWS.put(item, (float) 0);
-                Float weight = mapWeights.get(item);
-
-                if (weight != null)
-                {
-                    sumTransWeight += weight;
-                }
-                else
-                {
-                    System.out.println("Error: Missing item weight");
-                }
+                int item = db.items[j];
+                tidsets[item][tidsetSizes[item]++] = i;
+                sumTw[item] += db.tw[i];
             }
-            pi.tw = (sumTransWeight / pi.items.size());
-            ttw += pi.tw;
-            hashTwOfTrans.put(pi.transID, pi.tw);
         }
 
-        for (Map.Entry<Integer, Float> entry : mapWS.entrySet())
+        for (int item = 0; item <= db.maxItem; item++)
         {
-            Integer item = entry.getKey();
-            float ws = 0;
-            List<Integer> diffset = new ArrayList<>();
-            for (int i = 0; i < pDB.products.size(); i++)
-            {
-                Product pi = pDB.products.get(i);
-                for (int j = pi.items.size() - 1; j >= 0; j--)
-                {
-                    Integer itemInTrans = pi.items.get(j).name;
-                    if (item.equals(itemInTrans))
-                    {
-                        diffset.add(pi.transID);
-                        float tw = pi.tw;
-                        ws += tw;
-                    }
-                }
-            }
-            mapWS.put(item, (ws / ttw));
-            
-            FWIset f = new FWIset();
-            f.items.add(entry.getKey());
-            f.ws = entry.getValue();
-            f.diffset = diffset;
+            FWIset f = new FWIset(null, item);
+            f.ws = db.ws[item];
+            f.diffset = tidsets[item];
+            f.support = tidsets[item].length;
+            f.sumTw = sumTw[item];
             fwis1.add(f);
         }
 
-        Collections.sort(fwis1, FWIset.descendingFrequentComparator);
-        
-        pDB = null;
-        
         MemoryLogger.getInstance().reset();
         startTimestamp = System.currentTimeMillis();
-        findFWIs(fwis1, hashTwOfTrans, rank, ttw);
+        if (depthFirst)
+            findFWIsDepthFirst(fwis1, db.tw, ttw);
+        else
+            findFWIs(fwis1, db.tw, ttw);
         
         MemoryLogger.getInstance().checkMemory();
 
@@ -183,22 +164,23 @@ public class TFWID
     /**
      * Write the output file
      */
-    private void writeOutputFile(List<TRset> fwisTopRankK) throws IOException
+    private void writeOutputFile(TopRankK<FWIset> fwisTopRankK) throws IOException
     {
         String label = String.format("|%-10s|%-90s|%2s%n", "Rank", "Itemset", "Ws");
         writer.write(label);
         String line = new String(new char[115]).replace('\0', '-');
         writer.write(line);
         writer.newLine();
-        for (int i = 0; i < fwisTopRankK.size(); i++)
+        List<TopRankK.Rank<FWIset>> ranks = fwisTopRankK.ranks();
+        for (int i = 0; i < ranks.size(); i++)
         {
             StringBuilder item = new StringBuilder();
-            for (FWIset fwi : fwisTopRankK.get(i).fwiList)
+            for (FWIset fwi : ranks.get(i).fwiList)
             {
-                item.append(fwi.items + " ");
+                item.append(Arrays.toString(fwi.items(itemOf)) + " ");
                 countFWIs++;
             }
-            String values = String.format("|%-10s|%-90s|%2s%n", i + 1, item, fwisTopRankK.get(i).ws);
+            String values = String.format("|%-10s|%-90s|%2s%n", i + 1, item, ranks.get(i).ws);
             writer.write(values);
         }
         writer.close();
@@ -207,76 +189,27 @@ public class TFWID
     /**
      * Find Frequent weighted itemsets
      */
-    private void findFWIs(List<FWIset> is, Map<Integer, Float> hashTwOfTrans, int rank, float ttw) throws IOException
+    private void findFWIs(List<FWIset> is, float[] twOfTrans, float ttw) throws IOException
     {
+        // the itemsets of a level that enter the top-rank-k are joined into the next level
         List<FWIset> candidateK = new ArrayList<>();
-        for (int i = 0; i < is.size(); i++)
+        for (FWIset f : is)
         {
-            if (!fwisTopRankK.isEmpty() && fwisTopRankK.get(fwisTopRankK.size() - 1).ws == is.get(i).ws)
-            {
-                fwisTopRankK.get(fwisTopRankK.size() - 1).fwiList.add(is.get(i));
-                candidateK.add(is.get(i));
-            }
-            else
-            {
-                if (fwisTopRankK.size() == rank)
-                {
-                    break;
-                }
-                TRset r = new TRset();
-                r.ws = is.get(i).ws;
-                r.fwiList.add(is.get(i));
-                fwisTopRankK.add(r);
-                candidateK.add(is.get(i));
-            }
+            if (fwisTopRankK.add(f))
+                candidateK.add(f);
         }
 
         while (!candidateK.isEmpty())
         {
-            List<FWIset> candidate = tfwidCandidateGeneration(candidateK, hashTwOfTrans, ttw);
+            List<FWIset> candidate = tfwidCandidateGeneration(candidateK, twOfTrans, ttw);
 
             Collections.sort(candidate, FWIset.descendingFrequentComparator);
 
             candidateK = new ArrayList<>();
-
-            int i = 0;
-            int j = 0;
-
-            while (j < candidate.size() && i < fwisTopRankK.size())
+            for (FWIset c : candidate)
             {
-                if (candidate.get(j).ws == fwisTopRankK.get(i).ws)
-                {
-                    fwisTopRankK.get(i).fwiList.add(candidate.get(j));
-                    candidateK.add(candidate.get(j));
-                    j++;
-                }
-                else if (candidate.get(j).ws > fwisTopRankK.get(i).ws)
-                {
-                    TRset r = new TRset();
-                    r.ws = candidate.get(j).ws;
-                    r.fwiList.add(candidate.get(j));
-                    fwisTopRankK.add(i, r);
-                    if (fwisTopRankK.size() > rank)
-                    {
-                        fwisTopRankK.remove(fwisTopRankK.size() - 1);
-                    }
-                    candidateK.add(candidate.get(j));
-                    j++;
-                }
-                else
-                    i++;
-            }
-
-            if (fwisTopRankK.size() < rank && !candidate.isEmpty())
-            {
-                int z = Math.min((rank - fwisTopRankK.size()), (candidate.size() - j + 1));
-                for (i = j; i < (j + z); i++)
-                {
-                    TRset r = new TRset();
-                    r.ws = candidate.get(i).ws;
-                    r.fwiList.add(candidate.get(i));
-                    fwisTopRankK.add(r);
-                }
+                if (fwisTopRankK.add(c))
+                    candidateK.add(c);
             }
         }
     }
@@ -301,36 +234,31 @@ public class TFWID
      * TFWID algorithm
      * 
      * @param candidateK a list
-     * @param hashTwOfTrans a map
+     * @param twOfTrans the tw of each transaction
      * @param ttw float
      * @return 
      */
-    private List<FWIset> tfwidCandidateGeneration(List<FWIset> candidateK, Map<Integer, Float> hashTwOfTrans, float ttw)
+    private List<FWIset> tfwidCandidateGeneration(List<FWIset> candidateK, float[] twOfTrans, float ttw)
     {
         List<FWIset> candidateNext = new ArrayList<>();
+        JoinBuffer buffer = new JoinBuffer();
+        int[] classIds = new int[candidateK.size()];
+        for (int i = 0; i < candidateK.size(); i++)
+            classIds[i] = candidateK.get(i).classId;
+        EquivalenceClasses classes = new EquivalenceClasses(classIds);
+
         for (int i = candidateK.size() - 1; i > 0; i--)
         {
             FWIset cI = candidateK.get(i);
-            for (int j = i - 1; j >= 0; j--)
+            // only the candidates before cI in its own class share its prefix
+            for (int x = classes.indexInClass[i] - 1; x >= 0; x--)
             {
-                FWIset cJ = candidateK.get(j);
-                FWIset c = new FWIset();
-                if (checkSameEquivalence(cI, cJ))
-                {
-                    FloatByRef sumTw = new FloatByRef(0);
-                    if(cI.items.size() != 1 && cJ.items.size() != 1)
-                    {
-                        c.diffset = diffsetCombination(cI.diffset, cJ.diffset, hashTwOfTrans, sumTw);
-                        c.ws = (cI.ws - (sumTw.value / ttw));
-                    }
-                    else
-                    {
-                        c.diffset = diffsetCombination(cJ.diffset, cI.diffset, hashTwOfTrans, sumTw);
-                        c.ws = (cI.ws - (sumTw.value / ttw));
-                    }
-                    c.items = itemUnion(cI.items, cJ.items);
-                    candidateNext.add(c);
-                }
+                FWIset cJ = candidateK.get(classes.member(i, x));
+                if (!Diffset.join(cI, cJ, twOfTrans, Float.POSITIVE_INFINITY, buffer))
+                    continue;
+                FWIset c = Diffset.union(cI, cJ, buffer, Diffset.ws(cI, buffer, ttw));
+                c.classId = i;
+                candidateNext.add(c);
             }
         }
 
@@ -338,96 +266,37 @@ public class TFWID
     }
   
     /**
-     * Perform the union of two list of items
-     * 
-     * @param a a list
-     * @param b another list
-     * @return the union
-     */
-    List<Integer> itemUnion(List<Integer> a, List<Integer> b)
-    {
-        List<Integer> result = new ArrayList<>();
-        int i = 0;
-        while (i < a.size())
-        {
-            result.add(a.get(i));
-            i++;
-        }
-        result.add(b.get(b.size() - 1));
-        return result;
-    }
-    
-    /**
-     * Perform combinations
-     * 
-     * @param a
-     * @param b
-     * @return
-     */
-    private List<Integer> diffsetCombination(List<Integer> a, List<Integer> b,Map<Integer, Float> hashTwOfTrans, FloatByRef sumTw)
-    {
-        List<Integer> result = new ArrayList<>();
-        boolean diff;
-        for (int j = 0; j < b.size(); j++)
-        {
-            diff = true;
-            Integer bJ = b.get(j);
-            for (int i = 0; i < a.size(); i++)
-            {
-                Integer aI = a.get(i);
-                if(Objects.equals(bJ, aI))
-                {
-                    diff = false;
-                    break;
-                }
-            }
-            if(diff)                
-            {
-                result.add(bJ);
-                sumTw.value += hashTwOfTrans.get(bJ);
-            }
-        }
-        
-        return result;
-    }
-    
-    /**
-     * Class FloatByRef to pass an float by reference
+     * Find frequent weighted itemsets depth first
+     *
+     * The 1-items enter the top-rank-k first, then the equivalence class of
+     * each item is explored by a ClassSearch, on parallelism threads. An
+     * itemset whose ws is below the ws of the k-th rank cannot enter the
+     * top-rank-k and neither can its supersets, so it is not extended.
      */
-    class FloatByRef
+    private void findFWIsDepthFirst(List<FWIset> is, float[] twOfTrans, float ttw)
     {
-        float value;
+        for (FWIset f : is)
+            fwisTopRankK.add(f);
 
-        FloatByRef(float value)
-        {
-            this.value = value;
-        }
+        // each thread joins into its own buffer
+        ThreadLocal<JoinBuffer> buffers = ThreadLocal.withInitial(JoinBuffer::new);
+        new ClassSearch<>(fwisTopRankK, (cI, cJ, threshold) -> joinDepthFirst(cI, cJ, twOfTrans, buffers.get(), threshold, ttw))
+            .mine(is, parallelism);
+
+        // the threads add the itemsets of a rank in any order
+        fwisTopRankK.sort(Itemset.itemsComparator);
     }
-    
-    /** check same equivalence */
-    private boolean checkSameEquivalence(FWIset cI, FWIset cJ)
-    {
-        if (cI.items.size() == 1 && cJ.items.size() == 1)
-        {
-            return true;
-        }
-        else
-        {
-            int i = 0;
-            int j = 0;
-            boolean flag = true;
-            while (i < cI.items.size() - 1 && j < cJ.items.size() - 1)
-            {
-                if (!Objects.equals(cI.items.get(i), cJ.items.get(j)))
-                {
-                    flag = false;
-                    break;
-                }
-                i++;
-                j++;
-            }
 
-            return flag;
-        }
+    /** Join two members of a class of the depth-first search, or return null if the union is below the threshold */
+    private FWIset joinDepthFirst(FWIset cI, FWIset cJ, float[] twOfTrans, JoinBuffer buffer, float threshold, float ttw)
+    {
+        // the ws of cI minus the tw of the diffset must stay above the threshold
+        float maxSumTw = cI.ws * ttw - UpperBound.minSumTw(threshold, ttw);
+        if (!Diffset.join(cI, cJ, twOfTrans, maxSumTw, buffer))
+            return null;
+        float ws = Diffset.ws(cI, buffer, ttw);
+        if (ws < threshold)
+            return null;
+        return Diffset.union(cI, cJ, buffer, ws);
     }
 }
@@ -0,0 +1,411 @@
+package algorithm;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import tools.MemoryLogger;
+
+/**
+ * Hybrid of TFWIT and TFWID: the 1-items are stored as tidsets, and the
+ * class formed by the unions of an itemset switches to diffsets, relative to
+ * that itemset, as soon as its diffsets take less memory than its tidsets.
+ * The whole subtree of a class of diffsets stays in diffsets.
+ */
+public class TFWIH
+{
+    /** Number of transactions */
+    int numOfTrans;
+    
+    /** object to write the output file **/
+    BufferedWriter writer = null;
+
+    /** start time of the last algorithm execution */
+    long startTimestamp;
+
+    /** end time of the last algorithm execution */
+    long endTimestamp;
+    
+    /** sum of length of transactions */
+    float sumTransLength = 0;
+    
+    /** List of frequent weighted items */
+    List<FWIset> fwis1;
+
+    /** original id of each item, the items being ranked by TransactionDb.rankItems() */
+    int[] itemOf;
+    
+    /** The complete set of top-rank-k FWIs */
+    TopRankK<FWIset> fwisTopRankK;
+    
+    /** Total number of frequent weighted itemsets */
+    int countFWIs = 0;      
+
+    /** whether dense tidsets are stored as bitmaps */
+    boolean useBitmaps = true;
+
+    /**
+     * Choose whether tidsets holding more than 1/32 of the transactions are
+     * stored as bitmaps (the default) or all tidsets as sorted arrays
+     */
+    public void setUseBitmaps(boolean useBitmaps)
+    {
+        this.useBitmaps = useBitmaps;
+    }
+
+    /** whether identical transactions are merged before mining */
+    boolean collapseDuplicates = false;
+
+    /**
+     * Choose whether identical transactions are merged into single records of
+     * summed tw before mining, which shrinks the tree or the tidsets of
+     * databases with many duplicates; off by default
+     */
+    public void setCollapseDuplicates(boolean collapseDuplicates)
+    {
+        this.collapseDuplicates = collapseDuplicates;
+    }
+
+    /** whether the itemsets are mined depth first instead of level by level */
+    boolean depthFirst = false;
+
+    /**
+     * Choose whether the itemsets are mined level by level (the default) or
+     * depth first, one equivalence class at a time, raising the threshold of
+     * the top-rank-k as soon as an itemset enters it
+     */
+    public void setDepthFirst(boolean depthFirst)
+    {
+        this.depthFirst = depthFirst;
+    }
+
+    /** number of threads of the depth-first search */
+    int parallelism = 1;
+
+    /**
+     * Choose the number of threads of the depth-first search, 1 by default.
+     * With more threads the equivalence classes are mined in parallel on a
+     * ForkJoinPool; the result does not depend on the number of threads.
+     */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = parallelism;
+    }
+
+    /** sums of the tw of the pairs of items, or null if the pre-pass is off */
+    PairWs pairWs;
+
+    /** whether the scan of the database fills pairWs */
+    boolean usePairWs = false;
+
+    /**
+     * Choose whether the scan of the database also fills a matrix of the sum
+     * of the tw of every pair of items, off by default. The matrix raises the
+     * threshold of the top-rank-k before mining and skips the joins whose
+     * pair of last items is below the threshold; it takes one float per pair
+     * of items.
+     */
+    public void setPairWs(boolean usePairWs)
+    {
+        this.usePairWs = usePairWs;
+    }
+    
+    /**
+     * Run the algorithm
+     *
+     * @param fileNameOfTrans   the input file path of transactions
+     * @param fileNameOfWeights   the input file path of weights
+     * @param output     the output file path
+     * @param rank     top-rank-k
+     * @throws IOException if error while reading/writting to file
+     */
+    public void executeAlogrithm(String fileNameOfTrans, String fileNameOfWeights, String output, int rank) throws IOException
+    {
+        executeAlogrithm(TransactionDb.load(fileNameOfTrans, fileNameOfWeights), output, rank);
+    }
+
+    /**
+     * Run the algorithm on a database that is already loaded, for instance
+     * from a binary cache file
+     *
+     * @param db     the weighted database
+     * @param output     the output file path
+     * @param rank     top-rank-k
+     * @throws IOException if error while reading/writting to file
+     */
+    public void executeAlogrithm(TransactionDb db, String output, int rank) throws IOException
+    {
+        writer = new BufferedWriter(new FileWriter(output));
+
+        fwis1 = new ArrayList<>();
+        fwisTopRankK = new TopRankK<>(rank);
+
+        // the items are ranked by descending ws, so the 1-items are created in order
+        db = db.rankItems();
+        itemOf = db.itemOf;
+
+        numOfTrans = db.size();
+        sumTransLength = db.sumTransLength();
+        if (collapseDuplicates)
+            db = db.collapseDuplicates();
+        
+        // sum of all the transaction weight values in a weighted database
+        float ttw = db.ttw;
+
+        // tidset of each item, filled in a single scan of the database
+        int[][] tidsets = new int[db.maxItem + 1][];
+        int[] tidsetSizes = new int[db.maxItem + 1];
+        for (int item = 0; item <= db.maxItem; item++)
+            tidsets[item] = new int[db.itemCounts[item]];
+        pairWs = usePairWs ? new PairWs(db.itemCounts) : null;
+        for (int i = 0; i < db.size(); i++)
+        {
+            if (pairWs != null)
+                pairWs.addTransaction(db.items, db.offsets[i], db.offsets[i + 1], db.tw[i]);
+            for (int j = db.offsets[i + 1] - 1; j >= db.offsets[i]; j--)
+            {
+                int item = db.items[j];
+                tidsets[item][tidsetSizes[item]++] = i;
+            }
+        }
+        if (pairWs != null)
+            fwisTopRankK.raiseThreshold(pairWs.minThreshold(rank, db.ws, ttw));
+
+        for (int item = 0; item <= db.maxItem; item++)
+        {
+            FWIset f = new FWIset(null, item);
+            f.ws = db.ws[item];
+            f.tidset = Tidset.of(tidsets[item], db.tw, useBitmaps);
+            fwis1.add(f);
+        }
+
+        MemoryLogger.getInstance().reset();
+        startTimestamp = System.currentTimeMillis();
+        if (depthFirst)
+            findFWIsDepthFirst(fwis1, db.tw, ttw);
+        else
+            findFWIs(fwis1, db.tw, ttw);
+        
+        MemoryLogger.getInstance().checkMemory();
+
+        endTimestamp = System.currentTimeMillis();
+        
+        writeOutputFile(fwisTopRankK);
+    }
+    
+    /**
+     * Write the output file
+     */
+    private void writeOutputFile(TopRankK<FWIset> fwisTopRankK) throws IOException
+    {
+        String label = String.format("|%-10s|%-90s|%2s%n", "Rank", "Itemset", "Ws");
+        writer.write(label);
+        String line = new String(new char[115]).replace('\0', '-');
+        writer.write(line);
+        writer.newLine();
+        List<TopRankK.Rank<FWIset>> ranks = fwisTopRankK.ranks();
+        for (int i = 0; i < ranks.size(); i++)
+        {
+            StringBuilder item = new StringBuilder();
+            for (FWIset fwi : ranks.get(i).fwiList)
+            {
+                item.append(Arrays.toString(fwi.items(itemOf)) + " ");
+                countFWIs++;
+            }
+            String values = String.format("|%-10s|%-90s|%2s%n", i + 1, item, ranks.get(i).ws);
+            writer.write(values);
+        }
+        writer.close();
+    }
+    
+    /**
+     * Find Frequent weighted itemsets
+     */
+    private void findFWIs(List<FWIset> is, float[] twOfTrans, float ttw) throws IOException
+    {
+        // the itemsets of a level that enter the top-rank-k are joined into the next level
+        List<FWIset> candidateK = new ArrayList<>();
+        for (FWIset f : is)
+        {
+            if (fwisTopRankK.add(f))
+                candidateK.add(f);
+        }
+
+        while (!candidateK.isEmpty())
+        {
+            List<FWIset> candidate = tfwihCandidateGeneration(candidateK, twOfTrans, fwisTopRankK.threshold(), ttw);
+
+            Collections.sort(candidate, FWIset.descendingFrequentComparator);
+
+            candidateK = new ArrayList<>();
+            for (FWIset c : candidate)
+            {
+                if (fwisTopRankK.add(c))
+                    candidateK.add(c);
+            }
+        }
+    }
+    
+    /**
+     * Print statistics about the latest execution of the algorithm to System.out.
+     */
+    public void printStats()
+    {
+        System.out.println("========== TFWIH - STATUS ============");
+        System.out.println(" Number of transactions: " + numOfTrans);
+        System.out.println(" Number of frequent 1-items  : " + fwis1.size());
+        System.out.println(" sumTransLength : " + sumTransLength);
+        System.out.println(" Avg. Trans. size : " + (sumTransLength/numOfTrans));
+        System.out.println(" Number of frequent weight itemsets: " + countFWIs);
+        System.out.println(" Total time ~: " + (endTimestamp - startTimestamp) + " ms");
+        System.out.println(" Max memory:" + MemoryLogger.getInstance().getMaxMemory() + " MB");
+        System.out.println("==========================================");
+    }
+    
+    /**
+     * TFWIH algorithm: the unions of each candidate are joined like TFWIT or
+     * TFWID, depending on the representation of its class, then form a class
+     * whose representation is chosen by chooseRepresentation
+     * 
+     * @param candidateK a list
+     * @param twOfTrans the tw of each transaction
+     * @param threshold float
+     * @param ttw float
+     * @return 
+     */
+    private List<FWIset> tfwihCandidateGeneration(List<FWIset> candidateK, float[] twOfTrans, float threshold, float ttw)
+    {
+        List<FWIset> candidateNext = new ArrayList<>();
+        JoinBuffer buffer = new JoinBuffer();
+        int[] classIds = new int[candidateK.size()];
+        for (int i = 0; i < candidateK.size(); i++)
+            classIds[i] = candidateK.get(i).classId;
+        EquivalenceClasses classes = new EquivalenceClasses(classIds);
+
+        for (int i = candidateK.size() - 1; i > 0; i--)
+        {
+            FWIset cI = candidateK.get(i);
+            List<FWIset> children = new ArrayList<>();
+            // only the candidates before cI in its own class share its prefix
+            for (int x = classes.indexInClass[i] - 1; x >= 0; x--)
+            {
+                FWIset cJ = candidateK.get(classes.member(i, x));
+                // ws is anti-monotone, so the ws of the union is at most the ws of cI and of cJ
+                if (cI.ws < threshold || cJ.ws < threshold)
+                    continue;
+                FWIset c = join(cI, cJ, twOfTrans, buffer, threshold, ttw);
+                if (c == null)
+                    continue;
+                c.classId = i;
+                children.add(c);
+            }
+            chooseRepresentation(cI, children);
+            candidateNext.addAll(children);
+        }
+
+        return candidateNext;
+    }
+    
+    /**
+     * Find frequent weighted itemsets depth first
+     *
+     * The 1-items enter the top-rank-k first, then the equivalence class of
+     * each item is explored by a ClassSearch, on parallelism threads. An
+     * itemset whose ws is below the ws of the k-th rank cannot enter the
+     * top-rank-k and neither can its supersets, so it is not extended.
+     */
+    private void findFWIsDepthFirst(List<FWIset> is, float[] twOfTrans, float ttw)
+    {
+        for (FWIset f : is)
+            fwisTopRankK.add(f);
+
+        // each thread joins into its own buffer
+        ThreadLocal<JoinBuffer> buffers = ThreadLocal.withInitial(JoinBuffer::new);
+        new ClassSearch<>(fwisTopRankK, new ClassSearch.Join<FWIset>()
+        {
+            @Override
+            public FWIset join(FWIset cI, FWIset cJ, float threshold)
+            {
+                return TFWIH.this.join(cI, cJ, twOfTrans, buffers.get(), threshold, ttw);
+            }
+
+            @Override
+            public void formClass(FWIset cI, List<FWIset> children)
+            {
+                chooseRepresentation(cI, children);
+            }
+        }).mine(is, parallelism);
+
+        // the threads add the itemsets of a rank in any order
+        fwisTopRankK.sort(Itemset.itemsComparator);
+    }
+
+    /**
+     * Join a member of a class with an earlier member, as tidsets or as
+     * diffsets depending on the representation of their class
+     *
+     * @return the union, or null if its ws is below the threshold
+     */
+    private FWIset join(FWIset cI, FWIset cJ, float[] twOfTrans, JoinBuffer buffer, float threshold, float ttw)
+    {
+        float minSumTw = UpperBound.minSumTw(threshold, ttw);
+        if (pairWs != null && pairWs.prunes(cI, cJ, minSumTw))
+            return null;
+        float ws;
+        if (cI.tidset != null)
+        {
+            if (!Tidset.intersect(cI.tidset, cJ.tidset, twOfTrans, useBitmaps, minSumTw, buffer))
+                return null;
+            ws = (float) (buffer.sumTw / ttw);
+        }
+        else
+        {
+            if (!Diffset.join(cI, cJ, twOfTrans, cI.ws * ttw - minSumTw, buffer))
+                return null;
+            ws = Diffset.ws(cI, buffer, ttw);
+        }
+        if (ws < threshold)
+            return null;
+
+        if (cI.tidset == null)
+            return Diffset.union(cI, cJ, buffer, ws);
+        FWIset c = new FWIset(cI, cJ.item);
+        c.tidset = Tidset.of(buffer);
+        c.ws = ws;
+        return c;
+    }
+
+    /**
+     * Switch the class formed by the unions of a member from tidsets to
+     * diffsets relative to the member if the diffsets take less memory.
+     * A class of diffsets only forms classes of diffsets.
+     *
+     * @param cI the member
+     * @param children the unions of cI, all stored like cI
+     */
+    private void chooseRepresentation(FWIset cI, List<FWIset> children)
+    {
+        if (cI.tidset == null)
+            return;
+        long tidsetMemory = 0;
+        long diffsetMemory = 0;
+        for (FWIset c : children)
+        {
+            tidsetMemory += c.tidset.memory();
+            diffsetMemory += cI.tidset.size - c.tidset.size;
+        }
+        if (diffsetMemory >= tidsetMemory)
+            return;
+        for (FWIset c : children)
+        {
+            c.diffset = Tidset.difference(cI.tidset, c.tidset);
+            c.support = c.tidset.size;
+            c.sumTw = c.tidset.sumTw;
+            c.tidset = null;
+        }
+    }
+}
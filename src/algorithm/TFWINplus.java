@@ -6,9 +6,6 @@ import java.util.*;
 
 public class TFWINplus
 {
-    int pre;
-    int post;
-
     /** Number of transactions */
     int numOfTrans;
 
@@ -27,60 +24,88 @@ public class TFWINplus
     /** List of frequent weighted items */
     List<FWI> fwis1;
 
+    /** original id of each item, the items being ranked by TransactionDb.rankItems() */
+    int[] itemOf;
+
     /** The complete set of top-rank-k FWIs */
-    List<TR> fwisTopRankK;
+    TopRankK<FWI> fwisTopRankK;
 
-    /** list of serial numbers of each products */
-    Map<Integer, Integer> hashI1;
-    
     /** sum of length of transactions */
     float sumTransLength = 0;
 
-    /** Read the input Trans File */
-    ProductDb readTransFile(String filename) throws IOException
+    /** whether identical transactions are merged before mining */
+    boolean collapseDuplicates = false;
+
+    /**
+     * Choose whether identical transactions are merged into single records of
+     * summed tw before mining, which shrinks the tree or the tidsets of
+     * databases with many duplicates; off by default
+     */
+    public void setCollapseDuplicates(boolean collapseDuplicates)
     {
-        ProductDb pDb = new ProductDb();
+        this.collapseDuplicates = collapseDuplicates;
+    }
 
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        String line;
+    /** whether the tree is built by reading the transaction file twice instead of loading it */
+    boolean streaming = false;
 
-        int i = 0;
-        while (((line = reader.readLine()) != null))
-        {
-            Product p = new Product();
-            p.transID = ++i;
+    /**
+     * Choose whether executeAlogrithm(fileNameOfTrans, ...) reads the
+     * transaction file in two passes, see TransactionStream, inserting each
+     * transaction into the WPPC tree as it is read again instead of loading a
+     * TransactionDb first, so the peak memory before mining is the tree alone
+     * and a file larger than the heap can be mined; off by default. The
+     * output is the same; identical transactions are not merged and the tree
+     * is built on a single thread in this mode.
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
 
-            String[] lineSplited = line.split(" ");
+    /** whether the itemsets are mined depth first instead of level by level */
+    boolean depthFirst = false;
 
-            for (String itemString : lineSplited)
-            {
-                Item item = new Item();
-                item.name = Integer.parseInt(itemString);
-                p.items.add(item); 
-            }
-            sumTransLength += p.items.size();
-            pDb.products.add(p);
-        }
+    /**
+     * Choose whether the itemsets are mined level by level (the default) or
+     * depth first, one equivalence class at a time, raising the threshold of
+     * the top-rank-k as soon as an itemset enters it
+     */
+    public void setDepthFirst(boolean depthFirst)
+    {
+        this.depthFirst = depthFirst;
+    }
 
-        reader.close();
+    /** number of threads of the depth-first search and of the construction of the WPPC tree */
+    int parallelism = 1;
 
-        return pDb;
+    /**
+     * Choose the number of threads of the depth-first search, 1 by default.
+     * With more threads the equivalence classes are mined in parallel on a
+     * ForkJoinPool, and the WPPC tree is built in partitions, see
+     * WppcTree.build; the result does not depend on the number of threads.
+     */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = parallelism;
     }
 
-    /** Read the input Weights File */
-    Map<Integer, Float> readWeightsFile(String filename) throws IOException
-    {
-        Map<Integer, Float> mapWeights = new HashMap<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        String line;
+    /** sums of the tw of the pairs of items, or null if the pre-pass is off */
+    PairWs pairWs;
 
-        int item = 0;
-        while (((line = reader.readLine()) != null))
-        {
-            mapWeights.put(++item, Float.parseFloat(line));
-        }
-        reader.close();
-        return mapWeights;
+    /** whether the scan of the database fills pairWs */
+    boolean usePairWs = false;
+
+    /**
+     * Choose whether the scan of the database also fills a matrix of the sum
+     * of the tw of every pair of items, off by default. The matrix raises the
+     * threshold of the top-rank-k before mining and skips the joins whose
+     * pair of last items is below the threshold; it takes one float per pair
+     * of items.
+     */
+    public void setPairWs(boolean usePairWs)
+    {
+        this.usePairWs = usePairWs;
     }
 
     /**
@@ -94,102 +119,109 @@ public class TFWINplus
      */
     public void executeAlogrithm(String fileNameOfTrans, String fileNameOfWeights, String output, int rank) throws IOException
     {
+        if (!streaming)
+        {
+            executeAlogrithm(TransactionDb.load(fileNameOfTrans, fileNameOfWeights), output, rank);
+            return;
+        }
+
+        // the items are ranked by descending ws in the first pass, so the 1-items are created in order
+        TransactionStream stream = TransactionStream.open(fileNameOfTrans, fileNameOfWeights);
         writer = new BufferedWriter(new FileWriter(output));
 
-        pre = 0;
-        post = 0;
+        fwis1 = new ArrayList<>();
+        fwisTopRankK = new TopRankK<>(rank);
+        itemOf = stream.itemOf;
+        numOfTrans = stream.numOfTrans;
+        sumTransLength = stream.sumTransLength;
+
+        for (int item = 0; item < stream.ws.length; item++)
+        {
+            FWI f = new FWI(null, item);
+            f.ws = stream.ws[item];
+            fwis1.add(f);
+        }
+
+        NList[] nLists = buildTree(stream, rank).generateNLists(fwis1.size(), new NListArena());
+        mine(nLists, stream.ttw);
+    }
+
+    /** Build the WPPC tree in the second pass over a transaction file */
+    private WppcTree buildTree(TransactionStream stream, int rank) throws IOException
+    {
+        // the rank of an item is its serial number in the tree
+        WppcTree tree = new WppcTree(Math.min(stream.sumTransLength + 1, 1 << 16));
+        pairWs = usePairWs ? new PairWs(stream.itemCounts) : null;
+        stream.forEach((items, length, twT) ->
+        {
+            if (pairWs != null)
+                pairWs.addTransaction(items, 0, length, twT);
+            tree.insert(items, 0, length, twT);
+        });
+        if (pairWs != null)
+            fwisTopRankK.raiseThreshold(pairWs.minThreshold(rank, stream.ws, stream.ttw));
+        return tree;
+    }
+
+    /**
+     * Run the algorithm on a database that is already loaded, for instance
+     * from a binary cache file
+     *
+     * @param db     the weighted database
+     * @param output     the output file path
+     * @param rank     top-rank-k
+     * @throws IOException
+     */
+    public void executeAlogrithm(TransactionDb db, String output, int rank) throws IOException
+    {
+        writer = new BufferedWriter(new FileWriter(output));
 
         fwis1 = new ArrayList<>();
-        hashI1 = new HashMap<>();
-        fwisTopRankK = new ArrayList<>();
+        fwisTopRankK = new TopRankK<>(rank);
 
-        ProductDb pDB = readTransFile(fileNameOfTrans);
-        Map<Integer, Float> mapWeights = readWeightsFile(fileNameOfWeights);
-        numOfTrans = pDB.products.size();
+        // the items are ranked by descending ws, so the 1-items are created in order
+        db = db.rankItems();
+        itemOf = db.itemOf;
 
-        // map of weighted support
-        Map<Integer, Float> mapWS = new HashMap<>();
+        numOfTrans = db.size();
+        sumTransLength = db.sumTransLength();
+        if (collapseDuplicates)
+            db = db.collapseDuplicates();
 
         // sum of all the transaction weight values in a weighted database
-        float ttw = 0;
-        for (int i = 0; i < pDB.products.size(); i++)
-        {
-            float sumTransWeight = 0;
-            Product pi = pDB.products.get(i);
-            for (int j = pi.items.size() - 1; j >= 0; j--)
-            {
-                Integer item = pi.items.get(j).name;
-                mapWS.put(item, (float) 0);
-                Float weight = mapWeights.get(item);
-
-                if (weight != null)
-                {
-                    sumTransWeight += weight;
-                }
-                else
-                {
-                    System.out.println("Error: Missing item weight");
-                }
-            }
-            pi.tw = (sumTransWeight / pi.items.size());
-            ttw += pi.tw;
-        }
-        
-        for (Map.Entry<Integer, Float> entry : mapWS.entrySet())
+        float ttw = db.ttw;
+
+        for (int item = 0; item <= db.maxItem; item++)
         {
-            Integer item = entry.getKey();
-            float ws = 0;
-            for (int i = 0; i < pDB.products.size(); i++)
-            {
-                Product pi = pDB.products.get(i);
-                for (int j = pi.items.size() - 1; j >= 0; j--)
-                {
-                    Integer itemInTrans = pi.items.get(j).name;
-                    if (item.equals(itemInTrans))
-                    {
-                        float tw = pi.tw;
-                        ws += tw;
-                    }
-                }
-            }
-            mapWS.put(item, (ws / ttw));
-            
-            FWI f = new FWI();
-            f.items.add(entry.getKey());
-            f.ws = entry.getValue();
+            FWI f = new FWI(null, item);
+            f.ws = db.ws[item];
             fwis1.add(f);
         }
-        
-        Collections.sort(fwis1, FWI.descendingFrequentComparator);
-
-        for (int i = 0; i < fwis1.size(); i++)
-            hashI1.put(fwis1.get(i).items.get(0), i);
 
-        WnNode root = new WnNode();
-        root.item.name = -1;
-        for (int i = 0; i < pDB.products.size(); i++)
-        {
-            Product pDBi = pDB.products.get(i);
-            for (int l = pDBi.items.size() - 1; l >= 0; l--)
-            {
-                Item itemL = pDBi.items.get(l);
-                if (hashI1.get(itemL.name) == null)
-                    pDBi.items.remove(l);
-                else
-                    itemL.ws = fwis1.get(hashI1.get(itemL.name)).ws;
-            }
-            pDBi.Sort();
-            insertTree(pDBi, root);
-        }
-        pDB = null;
+        // the rank of an item is its serial number in the tree
+        pairWs = usePairWs ? new PairWs(db.itemCounts) : null;
+        WppcTree tree = WppcTree.build(db, parallelism, pairWs);
+        if (pairWs != null)
+            fwisTopRankK.raiseThreshold(pairWs.minThreshold(rank, db.ws, ttw));
+        db = null;
 
-        generateOrder(root);
+        NList[] nLists = tree.generateNLists(fwis1.size(), new NListArena());
+        tree = null;
+        mine(nLists, ttw);
+    }
 
-        generateNCSets(root);
+    /** Mine the top-rank-k from the N-lists of the 1-items and write it */
+    private void mine(NList[] nLists, float ttw) throws IOException
+    {
+        for (int i = 0; i < fwis1.size(); i++)
+            fwis1.get(i).nCs = nLists[i];
 
         MemoryLogger.getInstance().reset();
         startTimestamp = System.currentTimeMillis();
-        findFWIs(fwis1, rank, ttw);
+        if (depthFirst)
+            findFWIsDepthFirst(fwis1, ttw);
+        else
+            findFWIs(fwis1, ttw);
 
         MemoryLogger.getInstance().checkMemory();
 
@@ -217,22 +249,23 @@ public class TFWINplus
     /**
      * Write the output file
      */
-    private void writeOutputFile(List<TR> fwisTopRankK) throws IOException
+    private void writeOutputFile(TopRankK<FWI> fwisTopRankK) throws IOException
     {
         String label = String.format("|%-10s|%-90s|%2s%n", "Rank", "Itemset", "Ws");
         writer.write(label);
         String line = new String(new char[115]).replace('\0', '-');
         writer.write(line);
         writer.newLine();
-        for (int i = 0; i < fwisTopRankK.size(); i++)
+        List<TopRankK.Rank<FWI>> ranks = fwisTopRankK.ranks();
+        for (int i = 0; i < ranks.size(); i++)
         {
             StringBuilder item = new StringBuilder();
-            for (FWI fwi : fwisTopRankK.get(i).fwiList)
+            for (FWI fwi : ranks.get(i).fwiList)
             {
-                item.append(fwi.items + " ");
+                item.append(Arrays.toString(fwi.items(itemOf)) + " ");
                 countFWIs++;
             }
-            String values = String.format("|%-10s|%-90s|%2s%n", i + 1, item, fwisTopRankK.get(i).ws);
+            String values = String.format("|%-10s|%-90s|%2s%n", i + 1, item, ranks.get(i).ws);
             writer.write(values);
         }
         writer.close();
@@ -241,78 +274,31 @@ public class TFWINplus
     /**
      * Find Frequent weighted itemsets
      */
-    private void findFWIs(List<FWI> is, int rank, float ttw) throws IOException
+    private void findFWIs(List<FWI> is, float ttw) throws IOException
     {
+        // the itemsets of a level that enter the top-rank-k are joined into the next level
         List<FWI> candidateK = new ArrayList<>();
-        for (int i = 0; i < is.size(); i++)
+        for (FWI f : is)
         {
-            if (!fwisTopRankK.isEmpty() && fwisTopRankK.get(fwisTopRankK.size() - 1).ws == is.get(i).ws)
-            {
-                fwisTopRankK.get(fwisTopRankK.size() - 1).fwiList.add(is.get(i));
-                candidateK.add(is.get(i));
-            }
-            else
-            {
-                if (fwisTopRankK.size() == rank)
-                {
-                    break;
-                }
-                TR r = new TR();
-                r.ws = is.get(i).ws;
-                r.fwiList.add(is.get(i));
-                fwisTopRankK.add(r);
-                candidateK.add(is.get(i));
-            }
+            if (fwisTopRankK.add(f))
+                candidateK.add(f);
         }
 
-        float threshold = fwisTopRankK.get(fwisTopRankK.size() - 1).ws;
-        while (!candidateK.isEmpty())
+        // the N-lists of a level are freed in bulk once the level after it is generated
+        NListArena[] arenas = { new NListArena(), new NListArena() };
+        for (int level = 2; !candidateK.isEmpty(); level++)
         {
-            List<FWI> candidate = tfwinPlusCandidateGeneration(candidateK, threshold, ttw);
-            
+            NListArena arena = arenas[level % 2];
+            arena.reset();
+            List<FWI> candidate = tfwinPlusCandidateGeneration(candidateK, arena, fwisTopRankK.threshold(), ttw);
+
             Collections.sort(candidate, FWI.descendingFrequentComparator);
 
             candidateK = new ArrayList<>();
-
-            int i = 0;
-            int j = 0;
-
-            while (j < candidate.size() && i < fwisTopRankK.size())
-            {
-                if (candidate.get(j).ws == fwisTopRankK.get(i).ws)
-                {
-                    fwisTopRankK.get(i).fwiList.add(candidate.get(j));
-                    candidateK.add(candidate.get(j));
-                    j++;
-                }
-                else if (candidate.get(j).ws > fwisTopRankK.get(i).ws)
-                {
-                    TR r = new TR();
-                    r.ws = candidate.get(j).ws;
-                    r.fwiList.add(candidate.get(j));
-                    fwisTopRankK.add(i, r);
-                    if (fwisTopRankK.size() > rank)
-                    {
-                        fwisTopRankK.remove(fwisTopRankK.size() - 1);
-                        threshold = fwisTopRankK.get(fwisTopRankK.size() - 1).ws;
-                    }
-                    candidateK.add(candidate.get(j));
-                    j++;
-                }
-                else
-                    i++;
-            }
-
-            if (fwisTopRankK.size() < rank && !candidate.isEmpty())
+            for (FWI c : candidate)
             {
-                int z = Math.min((rank - fwisTopRankK.size()), (candidate.size() - j + 1));
-                for (i = j; i < (j + z); i++)
-                {
-                    TR r = new TR();
-                    r.ws = candidate.get(i).ws;
-                    r.fwiList.add(candidate.get(i));
-                    fwisTopRankK.add(r);
-                }
+                if (fwisTopRankK.add(c))
+                    candidateK.add(c);
             }
         }
     }
@@ -321,32 +307,47 @@ public class TFWINplus
      * TFWINPlus algorithm
      * 
      * @param candidateK a list
+     * @param arena the arena of the N-lists of the candidates
      * @param threshold float
      * @param ttw float
      * @return 
      */
-    private List<FWI> tfwinPlusCandidateGeneration(List<FWI> candidateK, float threshold, float ttw)
+    private List<FWI> tfwinPlusCandidateGeneration(List<FWI> candidateK, NListArena arena, float threshold, float ttw)
     {
         List<FWI> candidateNext = new ArrayList<>();
+        float minSumTw = UpperBound.minSumTw(threshold, ttw);
+        int[] classIds = new int[candidateK.size()];
+        for (int i = 0; i < candidateK.size(); i++)
+            classIds[i] = candidateK.get(i).classId;
+        EquivalenceClasses classes = new EquivalenceClasses(classIds);
+
         for (int i = candidateK.size() - 1; i > 0; i--)
         {
             FWI cI = candidateK.get(i);
-            for (int j = i - 1; j >= 0; j--)
+            // only the candidates before cI in its own class share its prefix
+            for (int x = classes.indexInClass[i] - 1; x >= 0; x--)
             {
+                int j = classes.member(i, x);
                 FWI cJ = candidateK.get(j);
-                FWI c = new FWI();
-                if (checkSameEquivalence(cI, cJ))
-                {
-                    if (cI.ws < threshold || cJ.ws < threshold)
-                        continue;
-                    FloatByRef sumTw = new FloatByRef(0);
-                    c.nCs = nodeCodeCombination(cI.nCs, cJ.nCs, sumTw);
-                    c.ws = (sumTw.value / ttw);
-                    if (c.ws < threshold)
-                        continue;
-                    c.items = itemUnion(cI.items, cJ.items);
-                    candidateNext.add(c);
-                }
+                if (cI.ws < threshold || cJ.ws < threshold)
+                    continue;
+                if (pairWs != null && pairWs.prunes(cI, cJ, minSumTw))
+                    continue;
+                // the N-list of an itemset holds the nodes of its last item, the
+                // highest in the tree, so the union extends the member whose last
+                // item is lower, and belongs to the class of that member
+                boolean iLower = cI.item > cJ.item;
+                NList nCs = iLower ? NList.combine(cI.nCs, cJ.nCs, minSumTw, arena) : NList.combine(cJ.nCs, cI.nCs, minSumTw, arena);
+                if (nCs == null)
+                    continue;
+                float ws = (float) (nCs.sumTw / ttw);
+                if (ws < threshold)
+                    continue;
+                FWI c = iLower ? new FWI(cI, cJ.item) : new FWI(cJ, cI.item);
+                c.nCs = nCs;
+                c.ws = ws;
+                c.classId = iLower ? i : j;
+                candidateNext.add(c);
             }
         }
         
@@ -354,222 +355,73 @@ public class TFWINplus
     }
 
     /**
-     * Perform combinations
-     * 
-     * @param a
-     * @param b
-     * @return
+     * Find frequent weighted itemsets depth first
+     *
+     * The 1-items enter the top-rank-k first, then the equivalence class of
+     * each item is explored by a ClassSearch, on parallelism threads. An
+     * itemset whose ws is below the ws of the k-th rank cannot enter the
+     * top-rank-k and neither can its supersets, so it is not extended.
      */
-    private List<NodeCode> nodeCodeCombination(List<NodeCode> a, List<NodeCode> b, FloatByRef sumTw)
+    private void findFWIsDepthFirst(List<FWI> is, float ttw)
     {
-        List<NodeCode> result = new ArrayList<>();
+        for (FWI f : is)
+            fwisTopRankK.add(f);
 
-        for (int j = 0; j < b.size(); j++)
+        // each thread combines N-lists in its own arena, freed subtree by subtree
+        ThreadLocal<NListArena> arenas = ThreadLocal.withInitial(NListArena::new);
+        new ClassSearch<>(fwisTopRankK, new ClassSearch.Join<FWI>()
         {
-            NodeCode bJ = b.get(j);
-            for (int i = 0; i < a.size(); i++)
+            @Override
+            public FWI join(FWI cI, FWI cJ, float threshold)
             {
-                NodeCode aI = a.get(i);
-                if (bJ.preOrder < aI.preOrder && bJ.postOrder > aI.postOrder)
-                {
-                    if (!result.isEmpty() && result.get(result.size() - 1).preOrder == bJ.preOrder && result.get(result.size() - 1).postOrder == bJ.postOrder)
-                    {
-                        result.get(result.size() - 1).tw += aI.tw;
-                    }
-                    else
-                    {
-                        NodeCode temp = new NodeCode();
-                        temp.preOrder = bJ.preOrder;
-                        temp.postOrder = bJ.postOrder;
-                        temp.tw = aI.tw;
-                        result.add(temp);
-                    }
-                    sumTw.value += aI.tw;
-                }
+                return joinDepthFirst(cI, cJ, arenas.get(), threshold, ttw);
             }
-        }
-
-        return result;
-    }
-
-    /**
-     * Class FloatByRef to pass an float by reference
-     */
-    class FloatByRef
-    {
-        float value;
-
-        FloatByRef(float value)
-        {
-            this.value = value;
-        }
-    }
-
-    /**
-     * Perform the union of two list of items
-     * 
-     * @param a a list
-     * @param b another list
-     * @return the union
-     */
-    List<Integer> itemUnion(List<Integer> a, List<Integer> b)
-    {
-        List<Integer> result = new ArrayList<>();
-        int i = 0;
-        while (i < a.size())
-        {
-            result.add(a.get(i));
-            i++;
-        }
-        result.add(b.get(b.size() - 1));
-        return result;
-    }
 
-    /** check same equivalence */
-    private boolean checkSameEquivalence(FWI cI, FWI cJ)
-    {
-        if (cI.items.size() == 1 && cJ.items.size() == 1)
-        {
-            return true;
-        }
-        else
-        {
-            int i = 0;
-            int j = 0;
-            boolean flag = true;
-            while (i < cI.items.size() - 1 && j < cJ.items.size() - 1)
+            @Override
+            public long mark()
             {
-                if (!Objects.equals(cI.items.get(i), cJ.items.get(j)))
-                {
-                    flag = false;
-                    break;
-                }
-                i++;
-                j++;
+                return arenas.get().mark();
             }
-            
-            return flag;
-        }
-    }
-
-    /**
-     * Generate NC sets
-     * 
-     * @param root the root of a tree
-     */
-    private void generateNCSets(WnNode root)
-    {
-        if (root.item.name != -1)
-        {
-            int stt = hashI1.get(root.item.name);
-            NodeCode nc = new NodeCode();
-            nc.preOrder = root.preOrder;
-            nc.postOrder = root.postOrder;
-            nc.tw = root.tw;
-            fwis1.get(stt).nCs.add(nc);
-        }
 
-        for (WnNode node : root.childNodes)
-            generateNCSets(node);
-    }
-
-    /**
-     * Generate order
-     * 
-     * @param root the root of a tree
-     */
-    private void generateOrder(WnNode root)
-    {
-
-        root.preOrder = pre++;
-        for (int i = 0; i < root.childNodes.size(); i++)
-        {
-            generateOrder(root.childNodes.get(i));
-        }
-        root.postOrder = post++;
-    }
-
-    /**
-     * Insert a product in the tree
-     * 
-     * @param p    product
-     * @param root the tree root
-     */
-    private void insertTree(Product pro, WnNode root)
-    {
-        while (!pro.items.isEmpty())
-        {
-            Item item = pro.items.get(0);
-            pro.items.remove(0);
-
-            boolean flag = false;
-            WnNode node = new WnNode();
-
-            for (int i = 0; i < root.childNodes.size(); i++)
+            @Override
+            public void release(long mark)
             {
-                if (root.childNodes.get(i).item.name == item.name)
-                {
-                    root.childNodes.get(i).tw += pro.tw;
-                    node = root.childNodes.get(i);
-                    flag = true;
-                    break;
-                }
+                arenas.get().release(mark);
             }
-            if (!flag)
-            {
-                node.item = item;
-                node.tw = pro.tw;
-                root.childNodes.add(node);
-            }
-            insertTree(pro, node);
-        }
-    }
-}
+        }).mine(is, parallelism);
 
-/** Class Node-Code (PP-code) */
-class NodeCode
-{
-    int postOrder;
-    int preOrder;
-    float tw;
-}
-
-/** Class Top Rank */
-class TR
-{
-    List<FWI> fwiList;
-    float ws;
+        // the threads add the itemsets of a rank in any order
+        fwisTopRankK.sort(Itemset.itemsComparator);
+    }
 
-    public TR()
+    /** Join two members of a class of the depth-first search, or return null if the union is below the threshold */
+    private FWI joinDepthFirst(FWI cI, FWI cJ, NListArena arena, float threshold, float ttw)
     {
-        fwiList = new ArrayList<>();
+        float minSumTw = UpperBound.minSumTw(threshold, ttw);
+        if (pairWs != null && pairWs.prunes(cI, cJ, minSumTw))
+            return null;
+        NList nCs = NList.combine(cI.nCs, cJ.nCs, minSumTw, arena);
+        if (nCs == null)
+            return null;
+        float ws = (float) (nCs.sumTw / ttw);
+        if (ws < threshold)
+            return null;
+        FWI c = new FWI(cI, cJ.item);
+        c.nCs = nCs;
+        c.ws = ws;
+        return c;
     }
+
 }
 
 /** Class representing a frequent weighted itemset */
-class FWI
+class FWI extends Itemset
 {
-    List<Integer> items;
-    float ws;
-    List<NodeCode> nCs;
+    NList nCs;
 
-    public FWI()
+    FWI(Itemset prefix, int item)
     {
-        items = new ArrayList<>();
-        nCs = new ArrayList<>();
-    }
-
-    public String toString()
-    {
-        StringBuilder sb = new StringBuilder();
-        for (Integer item : items)
-        {
-            sb.append(item);
-            sb.append(' ');
-        }
-        sb.append("#WS: ");
-        sb.append(this.ws);
-        return sb.toString();
+        super(prefix, item);
     }
 
     static Comparator<FWI> descendingFrequentComparator = new Comparator<FWI>()
@@ -582,80 +434,8 @@ class FWI
             else if (x.ws < y.ws)
                 return 1;
             else
-                return x.items.get(0).compareTo(y.items.get(0));
+                return Integer.compare(x.firstItem, y.firstItem);
 
         }
     };
 }
-
-/** Class representing a product database */
-class ProductDb
-{
-    List<Product> products;
-
-    ProductDb()
-    {
-        products = new ArrayList<>();
-    }
-}
-
-/** Class representing a product */
-class Product
-{
-    int transID;
-    List<Item> items;
-    float tw;
-
-    void Sort()
-    {
-        Collections.sort(items, Item.itemComparator);
-    }
-
-    Product()
-    {
-        transID = 0;
-        items = new ArrayList<>();
-        tw = 0;
-    }
-
-}
-
-/** Class representing an item */
-class Item
-{
-    int name;
-    float ws;
-
-    static Comparator<Item> itemComparator = new Comparator<Item>()
-    {
-        public int compare(Item x, Item y)
-        {
-            if (x.ws > y.ws)
-                return -1;
-            else if (x.ws < y.ws)
-                return 1;
-            else
-                return x.name - y.name;
-
-        }
-    };
-}
-
-/** Class representing a WPPC node */
-class WnNode
-{
-    Item item;
-    List<WnNode> childNodes;
-    int preOrder;
-    int postOrder;
-    float tw;
-
-    public WnNode()
-    {
-        item = new Item();
-        childNodes = new ArrayList<>();
-        preOrder = 0;
-        postOrder = 0;
-        tw = 0;
-    }
-}
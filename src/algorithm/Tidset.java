@@ -0,0 +1,281 @@
+package algorithm;
+
+/**
+ * Class representing a tidset, the transactions (numbered from 0) containing
+ * an itemset.
+ *
+ * A tidset is stored either as a sorted array of transaction ids or as a
+ * bitmap of one bit per transaction of the database, whichever is smaller
+ * for its size. The intersections always accumulate the tw of the common
+ * transactions in ascending transaction order, in double, so the miners
+ * round the ws of an itemset to float only once.
+ */
+class Tidset
+{
+    /** sorted transaction ids, or null if the tidset is a bitmap */
+    int[] tids;
+
+    /** bit t % 64 of word t / 64 is set for each transaction t, or null if the tidset is an array */
+    long[] bits;
+
+    /** number of transactions */
+    int size;
+
+    /** sum of the tw of the transactions, in ascending transaction order, in double */
+    double sumTw;
+
+    /**
+     * Create a tidset from sorted transaction ids
+     *
+     * @param tids the transaction ids
+     * @param tw the transaction weight of each transaction of the database
+     * @param useBitmaps false to always keep an array
+     */
+    static Tidset of(int[] tids, float[] tw, boolean useBitmaps)
+    {
+        Tidset result = new Tidset();
+        result.size = tids.length;
+        if (useBitmaps && isDense(tids.length, tw.length))
+        {
+            result.bits = new long[words(tw.length)];
+            for (int tid : tids)
+                result.bits[tid >>> 6] |= 1L << tid;
+        }
+        else
+        {
+            result.tids = tids;
+        }
+        for (int tid : tids)
+            result.sumTw += tw[tid];
+        return result;
+    }
+
+    /**
+     * Intersect two tidsets into a buffer, abandoning as soon as the tw of
+     * the result cannot reach minSumTw.
+     *
+     * A walk over an array tidset drops the transactions missing from the
+     * other tidset, and the sumTw of the array minus the tw dropped so far
+     * bounds the tw of the result. Two bitmaps are intersected by whole words
+     * without visiting the dropped transactions, so that intersection is
+     * never abandoned.
+     *
+     * @param a a tidset
+     * @param b another tidset
+     * @param tw the transaction weight of each transaction
+     * @param useBitmaps false to always return an array
+     * @param minSumTw the sum of tw the result must reach, see UpperBound
+     * @param buffer receives the intersection, see of(buffer), with the sum of the tw of its transactions
+     * @return false if the intersection was abandoned
+     */
+    static boolean intersect(Tidset a, Tidset b, float[] tw, boolean useBitmaps, float minSumTw, JoinBuffer buffer)
+    {
+        if (a.bits != null && b.bits != null)
+            return intersectBitmaps(a.bits, b.bits, tw, useBitmaps, buffer);
+        if (a.bits != null)
+            return intersectArrayBitmap(b, a.bits, tw, minSumTw, buffer);
+        if (b.bits != null)
+            return intersectArrayBitmap(a, b.bits, tw, minSumTw, buffer);
+        return intersectArrays(a, b, tw, minSumTw, buffer);
+    }
+
+    /** Create a tidset from the last intersection of a buffer */
+    static Tidset of(JoinBuffer buffer)
+    {
+        Tidset result = new Tidset();
+        if (buffer.bitmap)
+            result.bits = buffer.copyBits();
+        else
+            result.tids = buffer.copyTids();
+        result.size = buffer.size;
+        result.sumTw = buffer.sumTw;
+        return result;
+    }
+
+    private static boolean intersectBitmaps(long[] a, long[] b, float[] tw, boolean useBitmaps, JoinBuffer buffer)
+    {
+        int size = 0;
+        for (int w = 0; w < a.length; w++)
+            size += Long.bitCount(a[w] & b[w]);
+
+        double sum = 0;
+        if (useBitmaps && isDense(size, tw.length))
+        {
+            long[] bits = buffer.bits(a.length);
+            for (int w = 0; w < a.length; w++)
+            {
+                long word = a[w] & b[w];
+                bits[w] = word;
+                while (word != 0)
+                {
+                    sum += tw[(w << 6) + Long.numberOfTrailingZeros(word)];
+                    word &= word - 1;
+                }
+            }
+            buffer.bitmap = true;
+            buffer.words = a.length;
+        }
+        else
+        {
+            int[] tids = buffer.tids(size);
+            int n = 0;
+            for (int w = 0; w < a.length; w++)
+            {
+                long word = a[w] & b[w];
+                while (word != 0)
+                {
+                    int tid = (w << 6) + Long.numberOfTrailingZeros(word);
+                    tids[n++] = tid;
+                    sum += tw[tid];
+                    word &= word - 1;
+                }
+            }
+            buffer.bitmap = false;
+        }
+        buffer.size = size;
+        buffer.sumTw = sum;
+        return true;
+    }
+
+    private static boolean intersectArrayBitmap(Tidset a, long[] b, float[] tw, float minSumTw, JoinBuffer buffer)
+    {
+        int[] tids = buffer.tids(a.size);
+        int n = 0;
+        double sum = 0;
+        double bound = a.sumTw;
+        for (int i = 0; i < a.size; i++)
+        {
+            int tid = a.tids[i];
+            if ((b[tid >>> 6] & (1L << tid)) != 0)
+            {
+                tids[n++] = tid;
+                sum += tw[tid];
+            }
+            else
+            {
+                bound -= tw[tid];
+                if (bound < minSumTw)
+                    return false;
+            }
+        }
+        return arrayResult(buffer, n, sum);
+    }
+
+    private static boolean intersectArrays(Tidset a, Tidset b, float[] tw, float minSumTw, JoinBuffer buffer)
+    {
+        int[] tids = buffer.tids(Math.min(a.size, b.size));
+        int n = 0;
+        double sum = 0;
+        // the tw of a and of b minus the tw of their transactions dropped so far
+        double boundA = a.sumTw;
+        double boundB = b.sumTw;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size)
+        {
+            if (a.tids[i] < b.tids[j])
+            {
+                boundA -= tw[a.tids[i]];
+                if (boundA < minSumTw)
+                    return false;
+                i++;
+            }
+            else if (a.tids[i] > b.tids[j])
+            {
+                boundB -= tw[b.tids[j]];
+                if (boundB < minSumTw)
+                    return false;
+                j++;
+            }
+            else
+            {
+                tids[n++] = a.tids[i];
+                sum += tw[a.tids[i]];
+                i++;
+                j++;
+            }
+        }
+        return arrayResult(buffer, n, sum);
+    }
+
+    private static boolean arrayResult(JoinBuffer buffer, int n, double sum)
+    {
+        buffer.bitmap = false;
+        buffer.size = n;
+        buffer.sumTw = sum;
+        return true;
+    }
+
+    /**
+     * The transactions of a tidset that are not in a subset of it
+     *
+     * @param a a tidset
+     * @param b a subset of a
+     * @return the sorted transaction ids of a that are not in b
+     */
+    static int[] difference(Tidset a, Tidset b)
+    {
+        int[] result = new int[a.size - b.size];
+        int n = 0;
+        if (a.bits != null)
+        {
+            int j = 0;
+            for (int w = 0; w < a.bits.length; w++)
+            {
+                long word = (b.bits != null) ? a.bits[w] & ~b.bits[w] : a.bits[w];
+                while (word != 0)
+                {
+                    int tid = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (b.bits == null)
+                    {
+                        while (j < b.size && b.tids[j] < tid)
+                            j++;
+                        if (j < b.size && b.tids[j] == tid)
+                            continue;
+                    }
+                    result[n++] = tid;
+                }
+            }
+        }
+        else
+        {
+            int j = 0;
+            for (int i = 0; i < a.size; i++)
+            {
+                int tid = a.tids[i];
+                if (b.bits != null)
+                {
+                    if ((b.bits[tid >>> 6] & (1L << tid)) != 0)
+                        continue;
+                }
+                else
+                {
+                    while (j < b.size && b.tids[j] < tid)
+                        j++;
+                    if (j < b.size && b.tids[j] == tid)
+                        continue;
+                }
+                result[n++] = tid;
+            }
+        }
+        return result;
+    }
+
+    /** Number of ints the tidset takes in memory */
+    int memory()
+    {
+        return (bits != null) ? 2 * bits.length : size;
+    }
+
+    /** Whether a bitmap is smaller than an array for a tidset of this size */
+    static boolean isDense(int size, int numOfTrans)
+    {
+        return size > numOfTrans / 32;
+    }
+
+    static int words(int numOfTrans)
+    {
+        return (numOfTrans + 63) >>> 6;
+    }
+}
@@ -0,0 +1,141 @@
+package algorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Class holding the top-rank-k: the itemsets grouped by equal ws into the k
+ * ranks of highest ws.
+ *
+ * Several mining threads may add itemsets at once. The ws of the k-th rank is
+ * published in a volatile field, so the threads poll the threshold, and an
+ * itemset below it is rejected, without taking any lock. The ranks are kept
+ * in a concurrent skip list by descending ws: an itemset joining an existing
+ * rank only locks that rank, and only creating a rank, which may drop the
+ * last one, locks the whole container. A rank is dropped under its own lock
+ * too, so an itemset either joins its rank before the rank is dropped, as it
+ * would on one thread, or is rejected.
+ */
+class TopRankK<T extends Itemset>
+{
+    /** Class representing a rank: the itemsets of equal ws */
+    static class Rank<T>
+    {
+        final float ws;
+        final List<T> fwiList = new ArrayList<>();
+
+        /** whether the rank was dropped from the top k, set under the lock of the rank */
+        boolean dropped = false;
+
+        Rank(float ws)
+        {
+            this.ws = ws;
+        }
+    }
+
+    /** the number k of ranks */
+    private final int rank;
+
+    /** the ranks by descending ws */
+    private final ConcurrentSkipListMap<Float, Rank<T>> ranks = new ConcurrentSkipListMap<>(Collections.reverseOrder());
+
+    /** number of ranks, changed under the lock of the container */
+    private int size = 0;
+
+    /** a lower bound of the final ws of the k-th rank, set before mining */
+    private float floor = 0;
+
+    /** the ws of the k-th rank, or the floor while there are fewer than k ranks */
+    private volatile float threshold = 0;
+
+    TopRankK(int rank)
+    {
+        if (rank < 1)
+            throw new IllegalArgumentException("rank must be at least 1: " + rank);
+        this.rank = rank;
+    }
+
+    /** The ws of the k-th rank, or the floor (0 by default) while there are fewer than k ranks */
+    float threshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * Reject the itemsets below a ws the k-th rank is known to reach, before
+     * the ranks are filled
+     *
+     * @param floor a lower bound of the final ws of the k-th rank
+     */
+    synchronized void raiseThreshold(float floor)
+    {
+        this.floor = Math.max(this.floor, floor);
+        threshold = Math.max(threshold, this.floor);
+    }
+
+    /**
+     * Add an itemset to the rank of its ws, creating the rank if it is among
+     * the top k
+     *
+     * @param c the itemset
+     * @return whether the itemset entered the top-rank-k, false if it is below the threshold,
+     *         if its rank was dropped before the itemset joined it, or if no transaction contains it
+     */
+    boolean add(T c)
+    {
+        if (c.ws < threshold || c.ws == 0)
+            return false;
+
+        Rank<T> r = ranks.get(c.ws);
+        if (r == null)
+        {
+            synchronized (this)
+            {
+                r = ranks.get(c.ws);
+                if (r == null)
+                {
+                    if (c.ws < threshold)
+                        return false;
+                    r = new Rank<>(c.ws);
+                    ranks.put(c.ws, r);
+                    if (++size > rank)
+                    {
+                        Rank<T> last = ranks.lastEntry().getValue();
+                        synchronized (last)
+                        {
+                            ranks.remove(last.ws);
+                            last.dropped = true;
+                        }
+                        size--;
+                    }
+                    if (size == rank)
+                        threshold = Math.max(floor, ranks.lastKey());
+                }
+            }
+        }
+        synchronized (r)
+        {
+            // a rank dropped meanwhile is below the threshold, so is the itemset
+            if (r.dropped)
+                return false;
+            r.fwiList.add(c);
+        }
+        return true;
+    }
+
+    /** The ranks by descending ws, once the mining threads are done */
+    List<Rank<T>> ranks()
+    {
+        return new ArrayList<>(ranks.values());
+    }
+
+    /** Sort the itemsets of each rank, once the mining threads are done */
+    void sort(Comparator<? super T> comparator)
+    {
+        for (Rank<T> r : ranks.values())
+            Collections.sort(r.fwiList, comparator);
+    }
+}
@@ -0,0 +1,884 @@
+package algorithm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Class representing an immutable weighted transaction database.
+ *
+ * The transactions are stored in compressed sparse row form: the items of
+ * transaction t are items[offsets[t]] .. items[offsets[t + 1] - 1] and its
+ * transaction weight is tw[t]. Transaction t has the transaction id t + 1.
+ */
+public class TransactionDb
+{
+    /** items of all transactions, stored one transaction after another */
+    final int[] items;
+
+    /** start position of each transaction in items, plus the end of the last one */
+    final int[] offsets;
+
+    /** transaction weight of each transaction */
+    final float[] tw;
+
+    /** sum of all the transaction weight values */
+    final float ttw;
+
+    /** largest item appearing in a transaction */
+    final int maxItem;
+
+    /** length of the longest transaction */
+    final int maxLength;
+
+    /** number of occurrences of each item */
+    final int[] itemCounts;
+
+    /** weighted support of each item */
+    final float[] ws;
+
+    /** original id of each item of a ranked database, see rankItems(), null if the items are the original ids */
+    final int[] itemOf;
+
+    /** size of the windows in which a file is memory mapped */
+    static final int MAP_WINDOW = 1 << 30;
+
+    /** size in bytes from which a chunk of a transaction file parsed by one thread ends at the next newline */
+    static final int CHUNK_BYTES = 1 << 22;
+
+    /** first int of a binary database file, "TWDB" */
+    static final int TWDB_MAGIC = 0x54574442;
+
+    /** version of the binary database format */
+    static final int TWDB_VERSION = 1;
+
+    /** size in bytes of the header of a binary database file */
+    static final int TWDB_HEADER = 32;
+
+    TransactionDb(int[] items, int[] offsets, float[] tw)
+    {
+        this.items = items;
+        this.offsets = offsets;
+        this.tw = tw;
+
+        double sum = 0;
+        for (int t = 0; t < tw.length; t++)
+            sum += tw[t];
+        this.ttw = (float) sum;
+
+        int max = -1;
+        for (int item : items)
+            max = Math.max(max, item);
+        this.maxItem = max;
+
+        int longest = 0;
+        for (int t = 0; t < tw.length; t++)
+            longest = Math.max(longest, offsets[t + 1] - offsets[t]);
+        this.maxLength = longest;
+
+        this.itemCounts = new int[max + 1];
+        for (int item : items)
+            itemCounts[item]++;
+
+        double[] sumTw = itemTwSums();
+        this.ws = new float[max + 1];
+        for (int item = 0; item <= max; item++)
+            ws[item] = (float) (sumTw[item] / ttw);
+        this.itemOf = null;
+    }
+
+    /** Create a database whose statistics were already computed */
+    TransactionDb(int[] items, int[] offsets, float[] tw, float ttw, int maxLength, int[] itemCounts, float[] ws)
+    {
+        this(items, offsets, tw, ttw, maxLength, itemCounts, ws, null);
+    }
+
+    /** Create a database whose statistics were already computed, with the original id of each item if they are ranked */
+    TransactionDb(int[] items, int[] offsets, float[] tw, float ttw, int maxLength, int[] itemCounts, float[] ws, int[] itemOf)
+    {
+        this.items = items;
+        this.offsets = offsets;
+        this.tw = tw;
+        this.ttw = ttw;
+        this.maxItem = itemCounts.length - 1;
+        this.maxLength = maxLength;
+        this.itemCounts = itemCounts;
+        this.ws = ws;
+        this.itemOf = itemOf;
+    }
+
+    /** Number of transactions */
+    public int size()
+    {
+        return tw.length;
+    }
+
+    /** Sum of length of transactions */
+    public int sumTransLength()
+    {
+        return items.length;
+    }
+
+    /** Start position of transaction t */
+    int start(int t)
+    {
+        return offsets[t];
+    }
+
+    /** End position (exclusive) of transaction t */
+    int end(int t)
+    {
+        return offsets[t + 1];
+    }
+
+    /** Item at position p */
+    int item(int p)
+    {
+        return items[p];
+    }
+
+    /** Transaction weight of transaction t */
+    float tw(int t)
+    {
+        return tw[t];
+    }
+
+    /**
+     * Sum the transaction weights of the transactions containing each item,
+     * in a single scan of the database. The sums are kept in double, so they
+     * do not depend on the order of the transactions up to float precision.
+     *
+     * @return the sums, indexed by item
+     */
+    double[] itemTwSums()
+    {
+        double[] sumTw = new double[maxItem + 1];
+        for (int t = 0; t < tw.length; t++)
+        {
+            float twT = tw[t];
+            for (int j = offsets[t + 1] - 1; j >= offsets[t]; j--)
+                sumTw[items[j]] += twT;
+        }
+        return sumTw;
+    }
+
+    /**
+     * Renumber the items into dense ranks, once before mining: the items of
+     * the transactions are numbered 0 .. n - 1 by descending ws, the items of
+     * equal ws by ascending id, and the items of each transaction are sorted
+     * by rank. The miners then index their arrays directly by item, the rank
+     * of an item is its position in the 1-items and in the WPPC tree, and
+     * itemOf maps the ranks back to the original items for the output.
+     *
+     * @return the ranked database, sharing the offsets and tw of this one, or this database if it is already ranked
+     */
+    public TransactionDb rankItems()
+    {
+        if (itemOf != null)
+            return this;
+
+        int numOfItems = 0;
+        for (int item = 0; item <= maxItem; item++)
+            if (itemCounts[item] > 0)
+                numOfItems++;
+        Integer[] order = new Integer[numOfItems];
+        for (int item = 0, i = 0; item <= maxItem; item++)
+            if (itemCounts[item] > 0)
+                order[i++] = item;
+        Arrays.sort(order, (x, y) -> (ws[x] != ws[y]) ? Float.compare(ws[y], ws[x]) : Integer.compare(x, y));
+
+        int[] rankOf = new int[maxItem + 1];
+        int[] itemOf = new int[numOfItems];
+        int[] counts = new int[numOfItems];
+        float[] rankedWs = new float[numOfItems];
+        for (int r = 0; r < numOfItems; r++)
+        {
+            int item = order[r];
+            rankOf[item] = r;
+            itemOf[r] = item;
+            counts[r] = itemCounts[item];
+            rankedWs[r] = ws[item];
+        }
+
+        int[] ranked = new int[items.length];
+        for (int t = 0; t < tw.length; t++)
+        {
+            for (int p = offsets[t]; p < offsets[t + 1]; p++)
+                ranked[p] = rankOf[items[p]];
+            Arrays.sort(ranked, offsets[t], offsets[t + 1]);
+        }
+        return new TransactionDb(ranked, offsets, tw, ttw, maxLength, counts, rankedWs, itemOf);
+    }
+
+    /**
+     * Merge the identical transactions into single records, before the tree
+     * and the tidsets are built: the transactions are hashed with their items
+     * sorted, and each group of identical ones becomes one record, at the
+     * position of the first of them, whose tw is the sum of their tw. The ws
+     * of an itemset is the sum of the tw of the records containing it divided
+     * by ttw, as before, while the tidsets and diffsets hold one id per record.
+     * ttw and the ws of the items are kept, itemCounts counts the records.
+     *
+     * @return the database of the records, or this database if it has no duplicate transactions
+     */
+    public TransactionDb collapseDuplicates()
+    {
+        int numOfTrans = tw.length;
+        int[] sorted = items.clone();
+        for (int t = 0; t < numOfTrans; t++)
+            Arrays.sort(sorted, offsets[t], offsets[t + 1]);
+
+        // open addressing table of the first transaction of each group, plus 1
+        int[] table = new int[Integer.highestOneBit(Math.max(2 * numOfTrans, 2) - 1) << 1];
+        int mask = table.length - 1;
+        int[] recordOf = new int[numOfTrans];
+        int[] firsts = new int[numOfTrans];
+        int numOfRecords = 0;
+        for (int t = 0; t < numOfTrans; t++)
+        {
+            int hash = 1;
+            for (int p = offsets[t]; p < offsets[t + 1]; p++)
+                hash = 31 * hash + sorted[p];
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (table[slot] != 0 && !Arrays.equals(sorted, offsets[t], offsets[t + 1],
+                    sorted, offsets[table[slot] - 1], offsets[table[slot]]))
+                slot = (slot + 1) & mask;
+            if (table[slot] == 0)
+            {
+                table[slot] = t + 1;
+                recordOf[t] = numOfRecords;
+                firsts[numOfRecords++] = t;
+            }
+            else
+            {
+                recordOf[t] = recordOf[table[slot] - 1];
+            }
+        }
+        if (numOfRecords == numOfTrans)
+            return this;
+
+        int[] recordOffsets = new int[numOfRecords + 1];
+        for (int r = 0; r < numOfRecords; r++)
+            recordOffsets[r + 1] = recordOffsets[r] + offsets[firsts[r] + 1] - offsets[firsts[r]];
+        int[] recordItems = new int[recordOffsets[numOfRecords]];
+        int[] counts = new int[maxItem + 1];
+        for (int r = 0; r < numOfRecords; r++)
+        {
+            int start = offsets[firsts[r]];
+            System.arraycopy(sorted, start, recordItems, recordOffsets[r], recordOffsets[r + 1] - recordOffsets[r]);
+            for (int p = recordOffsets[r]; p < recordOffsets[r + 1]; p++)
+                counts[recordItems[p]]++;
+        }
+        double[] sumTw = new double[numOfRecords];
+        for (int t = 0; t < numOfTrans; t++)
+            sumTw[recordOf[t]] += tw[t];
+        float[] recordTw = new float[numOfRecords];
+        for (int r = 0; r < numOfRecords; r++)
+            recordTw[r] = (float) sumTw[r];
+        return new TransactionDb(recordItems, recordOffsets, recordTw, ttw, maxLength, counts, ws, itemOf);
+    }
+
+    /**
+     * Load a weighted database
+     *
+     * @param fileNameOfTrans   the input file path of transactions
+     * @param fileNameOfWeights   the input file path of weights
+     * @return the database
+     * @throws IOException if error while reading the files
+     */
+    public static TransactionDb load(String fileNameOfTrans, String fileNameOfWeights) throws IOException
+    {
+        float[] weights = readWeightsFile(fileNameOfWeights);
+        return readTransFile(fileNameOfTrans, weights);
+    }
+
+    /**
+     * Read the input Trans File.
+     *
+     * The file is split at newlines into chunks of about CHUNK_BYTES, which are
+     * parsed in parallel, see readTransFile(filename, weights, chunkBytes, parallelism).
+     */
+    static TransactionDb readTransFile(String filename, float[] weights) throws IOException
+    {
+        return readTransFile(filename, weights, CHUNK_BYTES, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Read the input Trans File.
+     *
+     * The file is split into chunks at newline boundaries and each chunk is
+     * memory mapped and parsed directly from the mapped bytes, so no String is
+     * created per line or item. A chunk computes the tw of its transactions
+     * and the sums of tw and the counts of its items while it parses them, and
+     * the chunks are appended in file order, so the transaction ids do not
+     * depend on the number of threads. The sums are kept in double and
+     * rounded to float once all the chunks are appended, so ttw and the ws of
+     * the items do not depend on chunkBytes either.
+     * Items are separated by spaces, tabs or carriage returns and transactions
+     * by newlines; blank lines are skipped.
+     *
+     * @param filename the input file path of transactions
+     * @param weights the weight of each item
+     * @param chunkBytes the size in bytes from which a chunk ends at the next newline
+     * @param parallelism the number of threads parsing the chunks, 1 to parse them on the calling thread
+     * @return the database
+     * @throws IOException if error while reading the file or if it is not a transaction file
+     */
+    static TransactionDb readTransFile(String filename, float[] weights, int chunkBytes, int parallelism) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            List<long[]> bounds = chunkBounds(channel, chunkBytes);
+            List<TransParser> chunks = new ArrayList<>();
+            if (parallelism <= 1 || bounds.size() <= 1)
+            {
+                for (long[] chunk : bounds)
+                    chunks.add(parseChunk(channel, filename, chunk[0], chunk[1], weights));
+                return append(chunks);
+            }
+
+            List<Callable<TransParser>> tasks = new ArrayList<>();
+            for (long[] chunk : bounds)
+                tasks.add(() -> parseChunk(channel, filename, chunk[0], chunk[1], weights));
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try
+            {
+                for (Future<TransParser> chunk : pool.invokeAll(tasks))
+                    chunks.add(chunk.get());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + filename);
+            }
+            catch (ExecutionException e)
+            {
+                // the pool may wrap the IOException of a chunk in a RuntimeException
+                for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+                {
+                    if (cause instanceof IOException)
+                        throw (IOException) cause;
+                }
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw new IOException(e.getCause());
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+            return append(chunks);
+        }
+    }
+
+    /**
+     * Parse a transaction file chunk by chunk, in file order, on the calling
+     * thread, handing each chunk to a consumer before parsing the next one, so
+     * only one chunk is held at a time. The chunks are those of
+     * readTransFile(filename, weights, chunkBytes, parallelism).
+     *
+     * @param filename the input file path of transactions
+     * @param weights the weight of each item
+     * @param chunkBytes the size in bytes from which a chunk ends at the next newline
+     * @param consumer the consumer of the parsed chunks
+     * @throws IOException if error while reading the file or if it is not a transaction file
+     */
+    static void forEachChunk(String filename, float[] weights, int chunkBytes, ChunkConsumer consumer) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            for (long[] chunk : chunkBounds(channel, chunkBytes))
+                consumer.chunk(parseChunk(channel, filename, chunk[0], chunk[1], weights));
+        }
+    }
+
+    /** A consumer of the parsed chunks of a transaction file */
+    interface ChunkConsumer
+    {
+        void chunk(TransParser chunk) throws IOException;
+    }
+
+    /** The start and end of each chunk of a file: a chunk ends after the first newline at or after chunkBytes - 1 bytes from its start */
+    private static List<long[]> chunkBounds(FileChannel channel, int chunkBytes) throws IOException
+    {
+        long size = channel.size();
+        List<long[]> bounds = new ArrayList<>();
+        for (long start = 0; start < size;)
+        {
+            long end = (size - start <= chunkBytes) ? size : nextLine(channel, start + chunkBytes - 1, size);
+            bounds.add(new long[] { start, end });
+            start = end;
+        }
+        return bounds;
+    }
+
+    /** The position after the first newline at or after a position, or the size of the file */
+    private static long nextLine(FileChannel channel, long position, long size) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        while (position < size)
+        {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                break;
+            for (int i = 0; i < n; i++)
+            {
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    /** Parse the transactions between two positions of a transaction file, which start a line */
+    private static TransParser parseChunk(FileChannel channel, String filename, long start, long end, float[] weights) throws IOException
+    {
+        int limit = (int) (end - start);
+        TransParser parser = new TransParser(limit / 2 + 1, weights);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, limit);
+        for (int i = 0; i < limit; i++)
+        {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9')
+            {
+                if (!parser.digit(b))
+                    throw new IOException("Item too large in " + filename + " at byte " + (start + i));
+            }
+            else if (b == '\n')
+            {
+                parser.endTransaction();
+            }
+            else if (b == ' ' || b == '\t' || b == '\r')
+            {
+                parser.endItem();
+            }
+            else
+            {
+                throw new IOException("Unexpected character '" + (char) b + "' in " + filename + " at byte " + (start + i));
+            }
+        }
+        parser.endTransaction();
+        return parser;
+    }
+
+    /** Append the parsed chunks of a transaction file, in file order */
+    private static TransactionDb append(List<TransParser> chunks)
+    {
+        ChunkTotals totals = new ChunkTotals();
+        for (TransParser chunk : chunks)
+            totals.add(chunk);
+
+        int[] items = new int[totals.length];
+        int[] offsets = new int[totals.numOfTrans + 1];
+        float[] tw = new float[totals.numOfTrans];
+        int t = 0;
+        for (TransParser chunk : chunks)
+        {
+            int position = offsets[t];
+            System.arraycopy(chunk.items, 0, items, position, chunk.length);
+            System.arraycopy(chunk.tw, 0, tw, t, chunk.numOfTrans);
+            for (int i = 1; i <= chunk.numOfTrans; i++)
+                offsets[t + i] = position + chunk.offsets[i];
+            t += chunk.numOfTrans;
+        }
+        return new TransactionDb(items, offsets, tw, totals.ttw(), totals.maxLength, totals.itemCounts, totals.ws());
+    }
+
+    /**
+     * Class summing the statistics of the parsed chunks of a transaction file.
+     * The sums of tw are kept in double and rounded to float once, by ttw()
+     * and ws(), so they do not depend on how the file is split into chunks up
+     * to float precision. The ws are divided by the rounded ttw, as the
+     * miners divide the tw of an itemset, so an itemset of the same
+     * transactions as an item gets the same ws.
+     */
+    static class ChunkTotals
+    {
+        int numOfTrans = 0;
+        int length = 0;
+        int maxItem = -1;
+        int maxLength = 0;
+        double ttw = 0;
+        int[] itemCounts = new int[0];
+
+        /** sum of the tw of the transactions containing each item */
+        double[] sumTw = new double[0];
+
+        void add(TransParser chunk)
+        {
+            numOfTrans += chunk.numOfTrans;
+            length = Math.addExact(length, chunk.length);
+            maxLength = Math.max(maxLength, chunk.maxLength);
+            ttw += chunk.ttw;
+            if (chunk.maxItem > maxItem)
+            {
+                maxItem = chunk.maxItem;
+                itemCounts = Arrays.copyOf(itemCounts, maxItem + 1);
+                sumTw = Arrays.copyOf(sumTw, maxItem + 1);
+            }
+            for (int item = 0; item <= chunk.maxItem; item++)
+            {
+                itemCounts[item] += chunk.itemCounts[item];
+                sumTw[item] += chunk.sumTw[item];
+            }
+        }
+
+        /** The sum of all the transaction weight values, once every chunk is added */
+        float ttw()
+        {
+            return (float) ttw;
+        }
+
+        /** The weighted support of each item, once every chunk is added */
+        float[] ws()
+        {
+            float[] ws = new float[maxItem + 1];
+            for (int item = 0; item <= maxItem; item++)
+                ws[item] = (float) (sumTw[item] / ttw());
+            return ws;
+        }
+    }
+
+    /**
+     * Class collecting the parsed items of a chunk of a transaction file into
+     * growing primitive arrays, with the tw of each transaction and the
+     * statistics of the items
+     */
+    static class TransParser
+    {
+        final float[] weights;
+        int[] items;
+        int[] offsets = new int[1024];
+        float[] tw = new float[1024];
+        int numOfTrans = 0;
+        int length = 0;
+
+        /** item being parsed, or -1 between items */
+        int value = -1;
+
+        /** statistics of the transactions parsed so far, the sums of tw in double */
+        double ttw = 0;
+        int maxItem = -1;
+        int maxLength = 0;
+        int[] itemCounts = new int[0];
+
+        /** sum of the tw of the transactions containing each item */
+        double[] sumTw = new double[0];
+
+        TransParser(int capacity, float[] weights)
+        {
+            items = new int[Math.max(capacity, 16)];
+            this.weights = weights;
+        }
+
+        /** Append a digit to the current item, return false if the item overflows */
+        boolean digit(byte b)
+        {
+            if (value < 0)
+                value = 0;
+            else if (value > (Integer.MAX_VALUE - 9) / 10)
+                return false;
+            value = value * 10 + (b - '0');
+            return true;
+        }
+
+        void endItem()
+        {
+            if (value < 0)
+                return;
+            if (length == items.length)
+                items = Arrays.copyOf(items, (int) Math.min((long) items.length * 2, Integer.MAX_VALUE - 8));
+            items[length++] = value;
+            if (value > maxItem)
+            {
+                maxItem = value;
+                if (maxItem >= itemCounts.length)
+                {
+                    itemCounts = Arrays.copyOf(itemCounts, Math.max(maxItem + 1, 2 * itemCounts.length));
+                    sumTw = Arrays.copyOf(sumTw, itemCounts.length);
+                }
+            }
+            value = -1;
+        }
+
+        /** End a transaction, computing its transaction weight (average item weight) */
+        void endTransaction()
+        {
+            endItem();
+            int start = offsets[numOfTrans];
+            if (length == start)
+                return;
+            if (numOfTrans + 2 > offsets.length)
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            if (numOfTrans == tw.length)
+                tw = Arrays.copyOf(tw, tw.length * 2);
+
+            float twT = transactionWeight(items, start, length, weights);
+            for (int j = length - 1; j >= start; j--)
+            {
+                itemCounts[items[j]]++;
+                sumTw[items[j]] += twT;
+            }
+
+            tw[numOfTrans] = twT;
+            ttw += twT;
+            maxLength = Math.max(maxLength, length - start);
+            offsets[++numOfTrans] = length;
+        }
+    }
+
+    /**
+     * The transaction weight of a transaction: the average weight of its items
+     *
+     * @param items the items of the transactions
+     * @param start the position of the first item of the transaction
+     * @param end the position after the last item of the transaction
+     * @param weights the weight of each item
+     * @return the transaction weight
+     */
+    static float transactionWeight(int[] items, int start, int end, float[] weights)
+    {
+        float sumTransWeight = 0;
+        for (int j = end - 1; j >= start; j--)
+        {
+            int item = items[j];
+            if (item > 0 && item < weights.length)
+            {
+                sumTransWeight += weights[item];
+            }
+            else
+            {
+                System.out.println("Error: Missing item weight");
+            }
+        }
+        return (sumTransWeight / (end - start));
+    }
+
+    /**
+     * Load a weighted database from a binary cache file, parsing the text files
+     * and writing the cache first if it is missing or older than the text files
+     *
+     * @param fileNameOfTrans   the input file path of transactions
+     * @param fileNameOfWeights   the input file path of weights
+     * @param fileNameOfCache   the path of the binary (.twdb) cache file
+     * @return the database
+     * @throws IOException if error while reading/writting the files
+     */
+    public static TransactionDb loadCached(String fileNameOfTrans, String fileNameOfWeights, String fileNameOfCache) throws IOException
+    {
+        File cache = new File(fileNameOfCache);
+        if (cache.isFile() && cache.lastModified() >= new File(fileNameOfTrans).lastModified()
+                && cache.lastModified() >= new File(fileNameOfWeights).lastModified())
+        {
+            return readBinary(fileNameOfCache);
+        }
+
+        TransactionDb db = load(fileNameOfTrans, fileNameOfWeights);
+        db.writeBinary(fileNameOfCache);
+        return db;
+    }
+
+    /**
+     * Write the database in the binary (.twdb) format.
+     *
+     * All values are little endian. The header holds the magic "TWDB", the
+     * version, the number of transactions, the sum of their lengths, the
+     * length of the longest one, the number of distinct items, the largest
+     * item and ttw. It is followed by the item dictionary (the distinct items
+     * in ascending order), the occurrence count and the ws of each of them,
+     * the transaction offsets, the items of all transactions and the tw of
+     * each transaction.
+     *
+     * @param filename the output file path
+     * @throws IOException if error while writting the file
+     * @throws IllegalStateException if the items are ranked, the file holds the original items
+     */
+    public void writeBinary(String filename) throws IOException
+    {
+        if (itemOf != null)
+            throw new IllegalStateException("Cannot write a database with ranked items: " + filename);
+
+        int numOfItems = 0;
+        for (int item = 0; item <= maxItem; item++)
+            if (itemCounts[item] > 0)
+                numOfItems++;
+
+        int[] dictionary = new int[numOfItems];
+        int[] counts = new int[numOfItems];
+        float[] dictionaryWs = new float[numOfItems];
+        for (int item = 0, i = 0; item <= maxItem; item++)
+        {
+            if (itemCounts[item] > 0)
+            {
+                dictionary[i] = item;
+                counts[i] = itemCounts[item];
+                dictionaryWs[i] = ws[item];
+                i++;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(TWDB_MAGIC).putInt(TWDB_VERSION).putInt(size()).putInt(items.length)
+                .putInt(maxLength).putInt(numOfItems).putInt(maxItem).putFloat(ttw);
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            writeInts(channel, buffer, dictionary);
+            writeInts(channel, buffer, counts);
+            writeFloats(channel, buffer, dictionaryWs);
+            writeInts(channel, buffer, offsets);
+            writeInts(channel, buffer, items);
+            writeFloats(channel, buffer, tw);
+        }
+    }
+
+    /**
+     * Read a database written by writeBinary. The file is memory mapped and
+     * the arrays are copied out of the mapping in bulk.
+     *
+     * @param filename the path of the binary (.twdb) file
+     * @return the database
+     * @throws IOException if error while reading the file or if it is not a binary database
+     */
+    public static TransactionDb readBinary(String filename) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            if (channel.size() < TWDB_HEADER)
+                throw new IOException("Not a binary transaction database: " + filename);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TWDB_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != TWDB_MAGIC || header.getInt() != TWDB_VERSION)
+                throw new IOException("Not a binary transaction database: " + filename);
+            int numOfTrans = header.getInt();
+            int length = header.getInt();
+            int maxLength = header.getInt();
+            int numOfItems = header.getInt();
+            int maxItem = header.getInt();
+            float ttw = header.getFloat();
+
+            long expected = TWDB_HEADER + 4L * (3L * numOfItems + 2L * numOfTrans + 1 + length);
+            if (channel.size() != expected)
+                throw new IOException("Truncated binary transaction database: " + filename);
+
+            long position = TWDB_HEADER;
+            int[] dictionary = new int[numOfItems];
+            position = readInts(channel, position, dictionary);
+            int[] counts = new int[numOfItems];
+            position = readInts(channel, position, counts);
+            float[] dictionaryWs = new float[numOfItems];
+            position = readFloats(channel, position, dictionaryWs);
+            int[] offsets = new int[numOfTrans + 1];
+            position = readInts(channel, position, offsets);
+            int[] items = new int[length];
+            position = readInts(channel, position, items);
+            float[] tw = new float[numOfTrans];
+            readFloats(channel, position, tw);
+
+            int[] itemCounts = new int[maxItem + 1];
+            float[] ws = new float[maxItem + 1];
+            for (int i = 0; i < numOfItems; i++)
+            {
+                itemCounts[dictionary[i]] = counts[i];
+                ws[dictionary[i]] = dictionaryWs[i];
+            }
+            return new TransactionDb(items, offsets, tw, ttw, maxLength, itemCounts, ws);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException
+    {
+        for (int i = 0; i < values.length;)
+        {
+            int n = Math.min(values.length - i, buffer.capacity() / 4);
+            buffer.asIntBuffer().put(values, i, n);
+            buffer.limit(4 * n);
+            writeFully(channel, buffer);
+            i += n;
+        }
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer buffer, float[] values) throws IOException
+    {
+        for (int i = 0; i < values.length;)
+        {
+            int n = Math.min(values.length - i, buffer.capacity() / 4);
+            buffer.asFloatBuffer().put(values, i, n);
+            buffer.limit(4 * n);
+            writeFully(channel, buffer);
+            i += n;
+        }
+    }
+
+    private static long readInts(FileChannel channel, long position, int[] values) throws IOException
+    {
+        for (int i = 0; i < values.length;)
+        {
+            int n = Math.min(values.length - i, MAP_WINDOW / 4);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * n).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer().get(values, i, n);
+            position += 4L * n;
+            i += n;
+        }
+        return position;
+    }
+
+    private static long readFloats(FileChannel channel, long position, float[] values) throws IOException
+    {
+        for (int i = 0; i < values.length;)
+        {
+            int n = Math.min(values.length - i, MAP_WINDOW / 4);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * n).order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer().get(values, i, n);
+            position += 4L * n;
+            i += n;
+        }
+        return position;
+    }
+
+    /** Read the input Weights File, the weight of item i is on line i */
+    static float[] readWeightsFile(String filename) throws IOException
+    {
+        float[] weights = new float[64];
+        BufferedReader reader = new BufferedReader(new FileReader(filename));
+        String line;
+
+        int item = 0;
+        while (((line = reader.readLine()) != null))
+        {
+            if (++item == weights.length)
+                weights = Arrays.copyOf(weights, weights.length * 2);
+            weights[item] = Float.parseFloat(line);
+        }
+        reader.close();
+        return Arrays.copyOf(weights, item + 1);
+    }
+}
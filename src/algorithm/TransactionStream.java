@@ -0,0 +1,153 @@
+package algorithm;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Class reading a transaction file in two passes instead of holding it in a
+ * TransactionDb, so a miner can build its WPPC tree from a file larger than
+ * the heap.
+ *
+ * The first pass, when the stream is opened, computes the tw of the
+ * transactions, ttw and the ws and counts of the items, and ranks the items
+ * as TransactionDb.rankItems() does. Each later pass re-reads the file and
+ * hands the transactions one by one to a consumer, ranked and sorted, in a
+ * buffer reused from one transaction to the next. Both passes parse the file
+ * chunk by chunk with TransactionDb.forEachChunk, holding one chunk at a
+ * time, and the first pass sums the chunks with TransactionDb.ChunkTotals,
+ * so the statistics, the ranks and the tw are the same as those of
+ * TransactionDb.load(...).rankItems().
+ */
+class TransactionStream
+{
+    /** A consumer of the transactions of a pass */
+    interface TransactionConsumer
+    {
+        /**
+         * Consume a transaction
+         *
+         * @param items the ranks of the items of the transaction, sorted, in a buffer reused by the next transaction
+         * @param length the number of items
+         * @param twT the transaction weight
+         */
+        void transaction(int[] items, int length, float twT);
+    }
+
+    private final String filename;
+    private final float[] weights;
+
+    /** number of transactions */
+    int numOfTrans;
+
+    /** sum of the lengths of the transactions */
+    int sumTransLength;
+
+    /** length of the longest transaction */
+    int maxLength;
+
+    /** sum of all the transaction weight values */
+    float ttw;
+
+    /** number of occurrences of each rank */
+    int[] itemCounts;
+
+    /** weighted support of each rank */
+    float[] ws;
+
+    /** original id of each rank */
+    int[] itemOf;
+
+    /** rank of each original item */
+    private int[] rankOf;
+
+    private TransactionStream(String filename, float[] weights)
+    {
+        this.filename = filename;
+        this.weights = weights;
+    }
+
+    /**
+     * Open a weighted transaction file, reading it once for the statistics
+     * and the ranks of its items
+     *
+     * @param fileNameOfTrans   the input file path of transactions
+     * @param fileNameOfWeights   the input file path of weights
+     * @return the stream
+     * @throws IOException if error while reading the files
+     */
+    static TransactionStream open(String fileNameOfTrans, String fileNameOfWeights) throws IOException
+    {
+        TransactionStream stream = new TransactionStream(fileNameOfTrans, TransactionDb.readWeightsFile(fileNameOfWeights));
+        stream.scan(TransactionDb.CHUNK_BYTES);
+        return stream;
+    }
+
+    /** The first pass: the statistics of the file and the ranks */
+    private void scan(int chunkBytes) throws IOException
+    {
+        TransactionDb.ChunkTotals totals = new TransactionDb.ChunkTotals();
+        TransactionDb.forEachChunk(filename, weights, chunkBytes, totals::add);
+        numOfTrans = totals.numOfTrans;
+        sumTransLength = totals.length;
+        maxLength = totals.maxLength;
+        ttw = totals.ttw();
+        rank(totals.itemCounts, totals.ws(), totals.maxItem);
+    }
+
+    /** Rank the items by descending ws, the items of equal ws by ascending id */
+    private void rank(int[] counts, float[] sumWs, int maxItem)
+    {
+        int numOfItems = 0;
+        for (int item = 0; item <= maxItem; item++)
+            if (counts[item] > 0)
+                numOfItems++;
+        Integer[] order = new Integer[numOfItems];
+        for (int item = 0, i = 0; item <= maxItem; item++)
+            if (counts[item] > 0)
+                order[i++] = item;
+        Arrays.sort(order, (x, y) -> (sumWs[x] != sumWs[y]) ? Float.compare(sumWs[y], sumWs[x]) : Integer.compare(x, y));
+
+        rankOf = new int[maxItem + 1];
+        itemOf = new int[numOfItems];
+        itemCounts = new int[numOfItems];
+        ws = new float[numOfItems];
+        for (int r = 0; r < numOfItems; r++)
+        {
+            int item = order[r];
+            rankOf[item] = r;
+            itemOf[r] = item;
+            itemCounts[r] = counts[item];
+            ws[r] = sumWs[item];
+        }
+    }
+
+    /**
+     * Read the file again, handing its transactions to a consumer in file order
+     *
+     * @param consumer the consumer of the ranked transactions
+     * @throws IOException if error while reading the file or if it changed since the first pass
+     */
+    void forEach(TransactionConsumer consumer) throws IOException
+    {
+        int[] ranked = new int[Math.max(maxLength, 1)];
+        TransactionDb.forEachChunk(filename, weights, TransactionDb.CHUNK_BYTES, chunk ->
+        {
+            for (int t = 0; t < chunk.numOfTrans; t++)
+            {
+                int start = chunk.offsets[t];
+                int length = chunk.offsets[t + 1] - start;
+                if (length > ranked.length)
+                    throw new IOException(filename + " changed since it was opened");
+                for (int j = length - 1; j >= 0; j--)
+                {
+                    int item = chunk.items[start + j];
+                    ranked[j] = (item < rankOf.length) ? rankOf[item] : -1;
+                }
+                Arrays.sort(ranked, 0, length);
+                if (ranked[0] < 0)
+                    throw new IOException(filename + " changed since it was opened");
+                consumer.transaction(ranked, length, chunk.tw[t]);
+            }
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package algorithm;
+
+/**
+ * Class computing the bounds used to abandon an intersection as soon as its
+ * itemset cannot reach the threshold of the top-rank-k any more.
+ *
+ * The running bound and the final ws sum the tw in different orders, and the
+ * pair matrix sums them in float, so the bound is relaxed by a small
+ * relative slack: an intersection is only abandoned when its itemset is
+ * clearly below the threshold, and the exact comparison of the final ws with
+ * the threshold is left to the caller.
+ */
+final class UpperBound
+{
+    /** relative slack covering the rounding of the float sums */
+    static final float SLACK = 1e-3f;
+
+    /** no bound: the intersection is never abandoned */
+    static final float NONE = Float.NEGATIVE_INFINITY;
+
+    private UpperBound()
+    {
+    }
+
+    /**
+     * The sum of tw below which an itemset cannot reach a threshold
+     *
+     * @param threshold the ws of the k-th rank
+     * @param ttw the total transaction weight
+     * @return the relaxed sum of tw, or NONE if the threshold is 0
+     */
+    static float minSumTw(float threshold, float ttw)
+    {
+        return threshold > 0 ? threshold * ttw * (1 - SLACK) : NONE;
+    }
+}
@@ -0,0 +1,446 @@
+package algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Class representing a WPPC tree stored as parallel arrays.
+ *
+ * Node 0 is the root. The children of a node form a linked list
+ * (firstChild, nextSibling) kept in insertion order, and the child of a node
+ * holding a given item is found through an open addressing hash table on
+ * (parent, item) instead of a scan of the children.
+ */
+class WppcTree
+{
+    /** partitions of the transactions per thread of a parallel build, see build */
+    static final int PARTITIONS_PER_THREAD = 8;
+
+    /** serial number of the item of each node, -1 for the root */
+    int[] item;
+
+    /** parent of each node, -1 for the root */
+    int[] parent;
+
+    /** first child of each node, -1 if none */
+    int[] firstChild;
+
+    /** next sibling of each node, -1 if none */
+    int[] nextSibling;
+
+    /** last child of each node, -1 if none, so that children are appended in order */
+    int[] lastChild;
+
+    /** pre-order and post-order codes of each node */
+    int[] preOrder;
+    int[] postOrder;
+
+    /** sum of the transaction weights of the transactions going through each node, in double */
+    double[] tw;
+
+    /** number of nodes, including the root */
+    int size;
+
+    /** hash table of node + 1 by (parent, item), 0 for an empty slot, null until the next insertion after a parallel build */
+    private int[] children;
+
+    WppcTree(int capacity)
+    {
+        capacity = Math.max(capacity, 16);
+        item = new int[capacity];
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        lastChild = new int[capacity];
+        preOrder = new int[capacity];
+        postOrder = new int[capacity];
+        tw = new double[capacity];
+        children = new int[Integer.highestOneBit(capacity) * 4];
+
+        item[0] = -1;
+        parent[0] = -1;
+        firstChild[0] = -1;
+        nextSibling[0] = -1;
+        lastChild[0] = -1;
+        size = 1;
+    }
+
+    /**
+     * Insert a transaction in the tree
+     *
+     * @param serials serial numbers of the items of the transactions, in ascending order in each transaction
+     * @param start   position of the first item of the transaction
+     * @param end     position after the last item of the transaction
+     * @param twT     transaction weight
+     */
+    void insert(int[] serials, int start, int end, float twT)
+    {
+        if (children == null)
+            rehash();
+        insert(0, serials, start, end, twT);
+    }
+
+    /** Insert the end of a transaction below a node */
+    private void insert(int node, int[] serials, int start, int end, float twT)
+    {
+        for (int l = start; l < end; l++)
+        {
+            int child = findChild(node, serials[l]);
+            if (child < 0)
+                child = addChild(node, serials[l]);
+            tw[child] += twT;
+            node = child;
+        }
+    }
+
+    /**
+     * Build the tree of a ranked database, whose items are the serial numbers
+     * of the tree, on a number of threads, with the same nodes, children order
+     * and tw as inserting the transactions one by one, so the N-lists are
+     * identical too.
+     *
+     * The top of the tree is built level by level on the calling thread, in
+     * transaction order, expanding only the nodes through which more than
+     * 1 / (PARTITIONS_PER_THREAD * parallelism) of the transactions go. The
+     * transactions then form one partition per node at which they stopped,
+     * and each thread builds the subtrees of some of the partitions in a tree
+     * of its own, inserting the transactions of a partition in their order,
+     * so the tw of every node is summed in the same order as by insert. The
+     * subtrees are finally copied below their nodes.
+     *
+     * A pair matrix is filled in the same scan as the tree on one thread, and
+     * by one more task of the pool, in transaction order, while the subtrees
+     * are built on several threads, so its sums do not depend on the number
+     * of threads either.
+     *
+     * @param db the ranked database
+     * @param parallelism the number of threads, 1 to insert the transactions on the calling thread
+     * @param pairWs the pair matrix to fill with the transactions, or null
+     * @return the tree
+     */
+    static WppcTree build(TransactionDb db, int parallelism, PairWs pairWs)
+    {
+        int numOfTrans = db.size();
+        int[] items = db.items;
+        int[] offsets = db.offsets;
+        WppcTree tree = new WppcTree(Math.min(db.sumTransLength() + 1, 1 << 16));
+        if (parallelism <= 1)
+        {
+            for (int t = 0; t < numOfTrans; t++)
+            {
+                if (pairWs != null)
+                    pairWs.addTransaction(items, offsets[t], offsets[t + 1], db.tw[t]);
+                tree.insert(items, offsets[t], offsets[t + 1], db.tw[t]);
+            }
+            return tree;
+        }
+
+        // the node each transaction has reached in the top of the tree, and the position of its next item
+        int[] node = new int[numOfTrans];
+        int[] next = Arrays.copyOf(offsets, numOfTrans);
+        int[] active = new int[numOfTrans];
+        int numOfActive = 0;
+        for (int t = 0; t < numOfTrans; t++)
+            if (offsets[t] < offsets[t + 1])
+                active[numOfActive++] = t;
+        int limit = Math.max(1, numOfTrans / (PARTITIONS_PER_THREAD * parallelism));
+        int[] counts = new int[tree.item.length];
+        while (numOfActive > 0)
+        {
+            for (int a = 0; a < numOfActive; a++)
+            {
+                int t = active[a];
+                int serial = items[next[t]++];
+                int child = tree.findChild(node[t], serial);
+                if (child < 0)
+                    child = tree.addChild(node[t], serial);
+                tree.tw[child] += db.tw[t];
+                if (child >= counts.length)
+                    counts = Arrays.copyOf(counts, tree.item.length);
+                counts[child]++;
+                node[t] = child;
+            }
+            int kept = 0;
+            for (int a = 0; a < numOfActive; a++)
+            {
+                int t = active[a];
+                if (counts[node[t]] > limit && next[t] < offsets[t + 1])
+                    active[kept++] = t;
+            }
+            numOfActive = kept;
+        }
+
+        // the partitions, in the order of their first transaction, and their transactions in order
+        int[] partitionOf = new int[tree.size];
+        Arrays.fill(partitionOf, -1);
+        int[] roots = new int[Math.min(numOfTrans, tree.size)];
+        int[] sizes = new int[roots.length + 1];
+        long[] work = new long[roots.length];
+        int numOfPartitions = 0;
+        for (int t = 0; t < numOfTrans; t++)
+        {
+            if (next[t] == offsets[t + 1])
+                continue;
+            int p = partitionOf[node[t]];
+            if (p < 0)
+            {
+                p = partitionOf[node[t]] = numOfPartitions++;
+                roots[p] = node[t];
+            }
+            sizes[p + 1]++;
+            work[p] += offsets[t + 1] - next[t];
+        }
+        for (int p = 0; p < numOfPartitions; p++)
+            sizes[p + 1] += sizes[p];
+        int[] transactions = new int[sizes[numOfPartitions]];
+        int[] filled = Arrays.copyOf(sizes, numOfPartitions);
+        for (int t = 0; t < numOfTrans; t++)
+            if (next[t] < offsets[t + 1])
+                transactions[filled[partitionOf[node[t]]]++] = t;
+
+        // the largest partitions first, each to the thread with the least work so far
+        Integer[] order = new Integer[numOfPartitions];
+        for (int p = 0; p < numOfPartitions; p++)
+            order[p] = p;
+        Arrays.sort(order, (x, y) -> Long.compare(work[y], work[x]));
+        List<List<Integer>> partitions = new ArrayList<>();
+        long[] load = new long[parallelism];
+        for (int k = 0; k < parallelism; k++)
+            partitions.add(new ArrayList<>());
+        for (int p : order)
+        {
+            int k = 0;
+            for (int j = 1; j < parallelism; j++)
+                if (load[j] < load[k])
+                    k = j;
+            partitions.get(k).add(p);
+            load[k] += work[p];
+        }
+
+        WppcTree[] subtrees = new WppcTree[parallelism];
+        int[] bases = new int[parallelism + 1];
+        List<ForkJoinTask<?>> builds = new ArrayList<>();
+        List<ForkJoinTask<?>> copies = new ArrayList<>();
+        for (int k = 0; k < parallelism; k++)
+        {
+            int thread = k;
+            builds.add(ForkJoinTask.adapt(() ->
+            {
+                // a child of the root of the subtree anchors each partition
+                WppcTree subtree = new WppcTree((int) Math.min(load[thread] + partitions.get(thread).size() + 1, 1 << 16));
+                for (int p : partitions.get(thread))
+                {
+                    int anchor = subtree.addChild(0, -1);
+                    for (int i = sizes[p]; i < sizes[p + 1]; i++)
+                    {
+                        int t = transactions[i];
+                        subtree.insert(anchor, items, next[t], offsets[t + 1], db.tw[t]);
+                    }
+                }
+                subtrees[thread] = subtree;
+            }));
+            copies.add(ForkJoinTask.adapt(() -> tree.copy(subtrees[thread], partitions.get(thread), roots, bases[thread])));
+        }
+        if (pairWs != null)
+        {
+            builds.add(ForkJoinTask.adapt(() ->
+            {
+                for (int t = 0; t < numOfTrans; t++)
+                    pairWs.addTransaction(items, offsets[t], offsets[t + 1], db.tw[t]);
+            }));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(builds)));
+            bases[0] = tree.size;
+            for (int k = 0; k < parallelism; k++)
+                bases[k + 1] = bases[k] + subtrees[k].size - 1 - partitions.get(k).size();
+            tree.grow(bases[parallelism]);
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(copies)));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        tree.size = bases[parallelism];
+        tree.children = null;
+        return tree;
+    }
+
+    /**
+     * Copy the nodes of a subtree built by build below the nodes of their
+     * partitions, as the nodes base, base + 1, ... of this tree
+     */
+    private void copy(WppcTree subtree, List<Integer> partitions, int[] roots, int base)
+    {
+        // the anchors are the children of the root of the subtree, in the order of the partitions
+        int[] map = new int[subtree.size];
+        map[0] = -1;
+        int anchor = 0;
+        for (int u = 1; u < subtree.size; u++)
+            map[u] = (subtree.parent[u] == 0) ? roots[partitions.get(anchor++)] : base++;
+
+        for (int u = 1; u < subtree.size; u++)
+        {
+            int g = map[u];
+            if (subtree.parent[u] != 0)
+            {
+                item[g] = subtree.item[u];
+                parent[g] = map[subtree.parent[u]];
+                nextSibling[g] = (subtree.nextSibling[u] < 0) ? -1 : map[subtree.nextSibling[u]];
+                tw[g] = subtree.tw[u];
+            }
+            firstChild[g] = (subtree.firstChild[u] < 0) ? -1 : map[subtree.firstChild[u]];
+            lastChild[g] = (subtree.lastChild[u] < 0) ? -1 : map[subtree.lastChild[u]];
+        }
+    }
+
+    /** Find the child of a node holding an item, or -1 */
+    int findChild(int node, int serial)
+    {
+        int mask = children.length - 1;
+        for (int slot = hash(node, serial) & mask;; slot = (slot + 1) & mask)
+        {
+            int child = children[slot] - 1;
+            if (child < 0)
+                return -1;
+            if (item[child] == serial && parent[child] == node)
+                return child;
+        }
+    }
+
+    private int addChild(int node, int serial)
+    {
+        if (size == item.length)
+            grow(size + 1);
+        if (2 * (size + 1) > children.length)
+            rehash();
+
+        int child = size++;
+        item[child] = serial;
+        parent[child] = node;
+        firstChild[child] = -1;
+        nextSibling[child] = -1;
+        lastChild[child] = -1;
+        if (lastChild[node] < 0)
+            firstChild[node] = child;
+        else
+            nextSibling[lastChild[node]] = child;
+        lastChild[node] = child;
+
+        putChild(child);
+        return child;
+    }
+
+    private void putChild(int child)
+    {
+        int mask = children.length - 1;
+        int slot = hash(parent[child], item[child]) & mask;
+        while (children[slot] != 0)
+            slot = (slot + 1) & mask;
+        children[slot] = child + 1;
+    }
+
+    private static int hash(int node, int serial)
+    {
+        int h = node * 0x9E3779B1 + serial;
+        return h ^ (h >>> 16);
+    }
+
+    /** Grow the node arrays to hold at least a number of nodes */
+    private void grow(int minCapacity)
+    {
+        if (minCapacity <= item.length)
+            return;
+        int capacity = (int) Math.max(minCapacity, Math.min(2L * item.length, Integer.MAX_VALUE - 8));
+        item = Arrays.copyOf(item, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        preOrder = Arrays.copyOf(preOrder, capacity);
+        postOrder = Arrays.copyOf(postOrder, capacity);
+        tw = Arrays.copyOf(tw, capacity);
+    }
+
+    private void rehash()
+    {
+        children = new int[(children == null) ? Integer.highestOneBit(Math.max(size, 16)) * 4 : children.length * 2];
+        for (int child = 1; child < size; child++)
+            putChild(child);
+    }
+
+    /**
+     * Assign the pre-order and post-order codes of all nodes and build the
+     * N-list of every item, in a single iterative depth-first traversal.
+     *
+     * The node codes of an item are appended in pre-order into an N-list
+     * pre-sized to the number of nodes of that item; the post-order code of a
+     * node is filled in when the traversal leaves it. The sumTw of each
+     * N-list is the sum of the tw of its nodes, in pre-order.
+     *
+     * @param numOfItems number of item serial numbers
+     * @param arena the arena of the N-lists
+     * @return the N-list of each item, indexed by serial number
+     */
+    NList[] generateNLists(int numOfItems, NListArena arena)
+    {
+        int[] counts = new int[numOfItems];
+        for (int node = 1; node < size; node++)
+            counts[item[node]]++;
+        NList[] nLists = new NList[numOfItems];
+        for (int i = 0; i < numOfItems; i++)
+            nLists[i] = new NList(arena, counts[i]);
+
+        // path from the root to the current node, and the N-list slot of each node on it
+        int[] stack = new int[64];
+        int[] slots = new int[64];
+        int depth = 0;
+        int pre = 0;
+        int post = 0;
+
+        stack[0] = 0;
+        preOrder[0] = pre++;
+        int node = firstChild[0];
+        while (true)
+        {
+            if (node >= 0)
+            {
+                // enter node
+                preOrder[node] = pre++;
+                NList nList = nLists[item[node]];
+                if (++depth == stack.length)
+                {
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                    slots = Arrays.copyOf(slots, 2 * depth);
+                }
+                stack[depth] = node;
+                slots[depth] = nList.size;
+                nList.add(preOrder[node], 0, tw[node]);
+                node = firstChild[node];
+            }
+            else
+            {
+                // leave the node on top of the stack
+                int top = stack[depth];
+                postOrder[top] = post++;
+                if (depth == 0)
+                    break;
+                nLists[item[top]].setPostOrder(slots[depth], postOrder[top]);
+                depth--;
+                node = nextSibling[top];
+            }
+        }
+        for (NList nList : nLists)
+        {
+            for (int i = 0; i < nList.size; i++)
+                nList.sumTw += nList.tw(i);
+        }
+        return nLists;
+    }
+}
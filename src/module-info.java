@@ -1,2 +1,4 @@
 module DACNTT2 {
+    // only the allocation benchmark of the bench source folder reads com.sun.management
+    requires static jdk.management;
 }
\ No newline at end of file
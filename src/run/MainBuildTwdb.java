@@ -0,0 +1,42 @@
+package run;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import algorithm.TransactionDb;
+
+/**
+ * Convert a transaction file and its weight file into a binary (.twdb)
+ * database that the algorithms can load directly.
+ *
+ * Arguments: transaction file, weight file, output file (default chess.tran chess.pro chess.twdb)
+ */
+public class MainBuildTwdb
+{
+    public static void main(String [] arg) throws IOException {
+
+        String inputTrans = arg.length > 0 ? arg[0] : fileToPath("chess.tran");
+        String inputWeights = arg.length > 1 ? arg[1] : fileToPath("chess.pro");
+        String output = arg.length > 2 ? arg[2] : "chess.twdb";
+
+        long start = System.currentTimeMillis();
+        TransactionDb db = TransactionDb.load(inputTrans, inputWeights);
+        long parseTime = System.currentTimeMillis() - start;
+        db.writeBinary(output);
+
+        start = System.currentTimeMillis();
+        db = TransactionDb.readBinary(output);
+        long readTime = System.currentTimeMillis() - start;
+
+        System.out.println("========== " + output + " ============");
+        System.out.println(" Number of transactions: " + db.size());
+        System.out.println(" sumTransLength : " + db.sumTransLength());
+        System.out.println(" Text parsing time ~: " + parseTime + " ms");
+        System.out.println(" Binary loading time ~: " + readTime + " ms");
+    }
+
+    public static String fileToPath(String fileName) throws UnsupportedEncodingException {
+        URL url = MainBuildTwdb.class.getResource(fileName);
+        return java.net.URLDecoder.decode(url.getPath(),"UTF-8");
+    }
+}